@@ -0,0 +1,132 @@
+package malilib.render.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import malilib.util.StringReader;
+
+/**
+ * Compares the token list based parser against the single pass {@link StyledTextParser#parseStreaming}
+ * on info line style strings, which get re-built from new values on every tick.
+ * Both variants tokenize the text and apply the style changes to a {@link TextStyle.Builder}.
+ * The glyph lookups and the width calculation need the game's font data, so they are not included.
+ * Run with <code>./gradlew jmh</code>, the gc profiler is enabled in the build script
+ * to also compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StyledTextParserBenchmark
+{
+    protected static final int STRING_COUNT = 1024;
+
+    @Param({ "plain", "styled", "multiline" })
+    public String textType;
+
+    protected final String[] strings = new String[STRING_COUNT];
+    protected int index;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        for (int i = 0; i < STRING_COUNT; ++i)
+        {
+            double x = -1234.5678 + i * 3.17;
+            double y = 64.0 + (i % 40) * 0.25;
+            double z = 8765.4321 - i * 1.91;
+            int fps = 40 + (i * 7) % 200;
+
+            switch (this.textType)
+            {
+                case "plain":
+                    this.strings[i] = String.format(Locale.ROOT, "XYZ: %.2f / %.4f / %.2f", x, y, z);
+                    break;
+                case "styled":
+                    this.strings[i] = String.format(Locale.ROOT, "<c=FFFFC040>XYZ:</c> <b>%.2f</b> / %.4f / <i>%.2f</i> <c=FF30FF90>%d fps</c>", x, y, z, fps);
+                    break;
+                default:
+                    this.strings[i] = String.format(Locale.ROOT, "§lFPS:§r <c=FFFF5090>%d</c>\\n<sh>XYZ: %.2f / %.4f / %.2f</sh>\n<u>Tick:</u> %d", fps, x, y, z, i);
+            }
+        }
+    }
+
+    protected String nextString()
+    {
+        String str = this.strings[this.index];
+        this.index = (this.index + 1) & (STRING_COUNT - 1);
+        return str;
+    }
+
+    @Benchmark
+    public void tokenList(Blackhole blackhole)
+    {
+        List<StyledTextParser.Token> tokens = new ArrayList<>();
+        TextStyle.Builder style = TextStyle.builder();
+
+        StyledTextParser.readTokens(new StringReader(this.nextString()), tokens);
+
+        for (StyledTextParser.Token token : tokens)
+        {
+            if (token instanceof StyledTextParser.StyleChangeToken)
+            {
+                StyledTextParser.StyleChangeToken styleToken = (StyledTextParser.StyleChangeToken) token;
+                styleToken.consumer.accept(style, styleToken.state);
+            }
+            else if (token instanceof StyledTextParser.ColorChangeToken)
+            {
+                StyledTextParser.ColorChangeToken colorToken = (StyledTextParser.ColorChangeToken) token;
+                colorToken.consumer.accept(style, colorToken.color);
+            }
+            else if (token instanceof StyledTextParser.VanillaStyleToken)
+            {
+                // Only the non-color codes are used, the color codes would need the game's TextRenderer
+                style.resetVanillaStyles();
+            }
+
+            blackhole.consume(token);
+        }
+
+        blackhole.consume(style);
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole)
+    {
+        TextStyle.Builder style = TextStyle.builder();
+
+        StyledTextParser.parseStreaming(this.nextString(), style, new StyledTextParser.SegmentVisitor()
+        {
+            @Override
+            public void onText(CharSequence text, int start, int end, TextStyle.Builder style)
+            {
+                blackhole.consume(end - start);
+            }
+
+            @Override
+            public void onLineBreak()
+            {
+                blackhole.consume(true);
+            }
+        });
+
+        blackhole.consume(style);
+    }
+}
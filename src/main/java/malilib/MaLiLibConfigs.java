@@ -37,8 +37,11 @@ public class MaLiLibConfigs
         public static final BooleanConfig ACTION_PROMPT_FUZZY_SEARCH                = new BooleanConfig("actionPromptFuzzySearch", false);
         public static final BooleanConfig ACTION_PROMPT_REMEMBER_SEARCH             = new BooleanConfig("actionPromptRememberSearch", false);
         public static final BooleanConfig ACTION_PROMPT_SEARCH_DISPLAY_NAME         = new BooleanConfig("actionPromptSearchDisplayName", false);
+        public static final BooleanConfig CONFIG_ASYNC_SAVING                       = new BooleanConfig("configAsyncSaving", true);
         public static final BooleanConfig CONFIG_BACKUP_ANTI_DUPLICATE              = new BooleanConfig("configBackupAntiDuplicate", true);
         public static final IntegerConfig CONFIG_BACKUP_COUNT                       = new IntegerConfig("configBackupCount", 20, 0, 200);
+        public static final BooleanConfig CONFIG_BINARY_SNAPSHOTS                   = new BooleanConfig("configBinarySnapshots", true);
+        public static final BooleanConfig CONFIG_PARALLEL_LOADING                   = new BooleanConfig("configParallelLoading", true);
         public static final BooleanConfig CONFIG_WIDGET_BACKGROUND                  = new BooleanConfig("configWidgetBackground", true);
         public static final IntegerConfig CUSTOM_HOTBAR_MESSAGE_LIMIT               = new IntegerConfig("customHotbarMessageLimit", 3, 1, 16);
         public static final IntegerConfig CUSTOM_SCREEN_SCALE                       = new IntegerConfig("customScreenScale", 2, 0, 8);
@@ -54,6 +57,8 @@ public class MaLiLibConfigs
         public static final IntegerConfig KEYBIND_DISPLAY_DURATION                  = new IntegerConfig("keybindDisplayDuration", 5000, 0, 120000);
         public static final IntegerConfig MESSAGE_FADE_OUT_TIME                     = new IntegerConfig("messageFadeOutTime", 500, 0, 10000);
         public static final BooleanConfig OPTION_LIST_CONFIG_USE_DROPDOWN           = new BooleanConfig("optionListConfigUseDropdown", false);
+        public static final IntegerConfig OVERLAY_CULLING_DISTANCE                  = new IntegerConfig("overlayCullingDistance", 0, 0, 4096);
+        public static final BooleanConfig OVERLAY_FRUSTUM_CULLING                   = new BooleanConfig("overlayFrustumCulling", true);
         public static final BooleanConfig REALMS_COMMON_CONFIG                      = new BooleanConfig("realmsCommonConfig", true);
         public static final BooleanConfig REMEMBER_CONFIG_TAB_SCROLL_POSITIONS      = new BooleanConfig("rememberConfigTabScrollPositions", true);
         public static final BooleanConfig REMEMBER_FILE_BROWSER_SCROLL_POSITIONS    = new BooleanConfig("rememberFileBrowserScrollPositions", true);
@@ -63,6 +68,7 @@ public class MaLiLibConfigs
         public static final BooleanConfig SORT_CONFIGS_BY_NAME                      = new BooleanConfig("sortConfigsByName", false);
         public static final BooleanConfig SORT_EXTENSION_MOD_OPTIONS                = new BooleanConfig("sortExtensionModOptions", false);
         public static final BooleanConfig TEXT_FIELD_RIGHT_CLICK_CONTEXT_MENU       = new BooleanConfig("textFieldRightClickContextMenu", true);
+        public static final BooleanConfig TEXT_RENDERER_GLYPH_ATLAS                 = new BooleanConfig("textRendererGlyphAtlas", false);
         public static final BooleanConfig TRANSLATION_OVERRIDES                     = new BooleanConfig("translationOverrides", false);
 
         public static final ImmutableList<ConfigOption<?>> OPTIONS = ImmutableList.of(
@@ -70,8 +76,11 @@ public class MaLiLibConfigs
                 ACTION_PROMPT_FUZZY_SEARCH,
                 ACTION_PROMPT_REMEMBER_SEARCH,
                 ACTION_PROMPT_SEARCH_DISPLAY_NAME,
+                CONFIG_ASYNC_SAVING,
                 CONFIG_BACKUP_ANTI_DUPLICATE,
                 CONFIG_BACKUP_COUNT,
+                CONFIG_BINARY_SNAPSHOTS,
+                CONFIG_PARALLEL_LOADING,
                 CONFIG_WIDGET_BACKGROUND,
                 CONFIG_SEARCH_DEFAULT_SCOPE,
                 CONFIG_WRITE_METHOD,
@@ -91,6 +100,8 @@ public class MaLiLibConfigs
                 KEYBIND_DISPLAY_DURATION,
                 MESSAGE_FADE_OUT_TIME,
                 OPTION_LIST_CONFIG_USE_DROPDOWN,
+                OVERLAY_CULLING_DISTANCE,
+                OVERLAY_FRUSTUM_CULLING,
                 REALMS_COMMON_CONFIG,
                 REMEMBER_CONFIG_TAB_SCROLL_POSITIONS,
                 REMEMBER_FILE_BROWSER_SCROLL_POSITIONS,
@@ -100,6 +111,7 @@ public class MaLiLibConfigs
                 SORT_CONFIGS_BY_NAME,
                 SORT_EXTENSION_MOD_OPTIONS,
                 TEXT_FIELD_RIGHT_CLICK_CONTEXT_MENU,
+                TEXT_RENDERER_GLYPH_ATLAS,
                 TRANSLATION_OVERRIDES
         );
     }
@@ -2,6 +2,7 @@ package malilib;
 
 import malilib.config.BaseModConfig;
 import malilib.input.CustomHotkeyManager;
+import malilib.network.SplitPacketSessionManager;
 import malilib.network.message.ConfigLockPacketHandler;
 import malilib.overlay.widget.ConfigStatusIndicatorContainerWidget;
 import malilib.registry.Registry;
@@ -21,6 +22,8 @@ public class MaLiLibInitHandler
         Registry.RENDER_EVENT_DISPATCHER.registerGameOverlayRenderer(Registry.INFO_OVERLAY);
         Registry.RENDER_EVENT_DISPATCHER.registerScreenPostRenderer(Registry.INFO_OVERLAY);
         Registry.TICK_EVENT_DISPATCHER.registerClientTickHandler(Registry.INFO_OVERLAY);
+        Registry.TICK_EVENT_DISPATCHER.registerClientTickHandler(SplitPacketSessionManager.INSTANCE);
+        Registry.CLIENT_WORLD_CHANGE_EVENT_DISPATCHER.registerClientWorldChangeHandler(SplitPacketSessionManager.INSTANCE);
 
         MaLiLibConfigInit.init();
         MaLiLibActions.init();
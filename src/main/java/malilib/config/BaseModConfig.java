@@ -18,7 +18,8 @@ public abstract class BaseModConfig implements ModConfig
     protected IntSupplier backupCountSupplier = MaLiLibConfigs.Generic.CONFIG_BACKUP_COUNT::getIntegerValue;
     protected BooleanSupplier antiDuplicateSupplier = MaLiLibConfigs.Generic.CONFIG_BACKUP_ANTI_DUPLICATE::getBooleanValue;
     protected String backupDirectoryName = "backups";
-    protected int savedConfigVersion;
+    /** Volatile, because the asynchronous config saves update this from the saver thread */
+    protected volatile int savedConfigVersion;
 
     public BaseModConfig(ModInfo modInfo, String configFileName, int currentConfigVersion,
                          List<ConfigOptionCategory> configOptionCategories)
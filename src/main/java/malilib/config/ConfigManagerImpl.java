@@ -1,13 +1,19 @@
 package malilib.config;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.annotation.Nullable;
 
 import malilib.MaLiLib;
+import malilib.MaLiLibConfigs;
+import malilib.config.util.AsyncConfigSaver;
 import malilib.util.data.ModInfo;
 
 public class ConfigManagerImpl implements ConfigManager
@@ -68,11 +74,141 @@ public class ConfigManagerImpl implements ConfigManager
      */
     public void loadAllConfigs()
     {
-        for (ModConfig handler : this.configHandlers.values())
+        // Make sure that any pending async saves have been written before reading the files
+        AsyncConfigSaver.INSTANCE.flush();
+
+        final long startTime = System.nanoTime();
+        final List<ModConfig> handlers = new ArrayList<>(this.configHandlers.values());
+        final List<Path> configFiles = new ArrayList<>(handlers.size());
+        final boolean parallel = handlers.size() > 1 && MaLiLibConfigs.Generic.CONFIG_PARALLEL_LOADING.getBooleanValue();
+        final List<ForkJoinTask<ParsedConfig>> parseTasks = new ArrayList<>();
+
+        if (parallel == false)
+        {
+            for (ModConfig handler : handlers)
+            {
+                MaLiLib.debugLog("Loading configs for mod {}", handler.getModInfo().getModId());
+                handler.loadFromFile();
+            }
+
+            MaLiLib.debugLog("Loaded the configs of {} mods in {} ms", handlers.size(),
+                             formatDuration(System.nanoTime() - startTime));
+            return;
+        }
+
+        for (ModConfig handler : handlers)
+        {
+            configFiles.add(handler.getConfigDirectory().resolve(handler.getConfigFileName()));
+        }
+
+        // Only the reading and parsing of the files is done in parallel,
+        // the values are then applied to the configs on this thread in the registration order.
+        // Handlers that override the loadFromFile() method are loaded through it on this thread.
+        for (int i = 0; i < handlers.size(); ++i)
+        {
+            final ModConfig handler = handlers.get(i);
+            final Path configFile = configFiles.get(i);
+
+            if (overridesLoadFromFile(handler))
+            {
+                parseTasks.add(null);
+                continue;
+            }
+
+            handler.prepareLoadTask();
+            parseTasks.add(ForkJoinPool.commonPool().submit(() -> parseConfigFile(handler, configFile)));
+        }
+
+        for (int i = 0; i < handlers.size(); ++i)
         {
+            ModConfig handler = handlers.get(i);
+            ForkJoinTask<ParsedConfig> task = parseTasks.get(i);
+
             MaLiLib.debugLog("Loading configs for mod {}", handler.getModInfo().getModId());
-            handler.loadFromFile();
+
+            if (task != null)
+            {
+                this.applyParsedConfig(handler, configFiles.get(i), joinParseTask(task, handler));
+            }
+            else
+            {
+                handler.loadFromFile();
+            }
         }
+
+        MaLiLib.debugLog("Loaded the configs of {} mods in {} ms (parallel)", handlers.size(),
+                         formatDuration(System.nanoTime() - startTime));
+    }
+
+    /**
+     * @return true if the handler overrides the no-argument {@link ModConfig#loadFromFile()} method,
+     *         in which case the configs must be loaded through it
+     */
+    protected static boolean overridesLoadFromFile(ModConfig handler)
+    {
+        try
+        {
+            return handler.getClass().getMethod("loadFromFile").getDeclaringClass() != ModConfig.class;
+        }
+        catch (Exception e)
+        {
+            return true;
+        }
+    }
+
+    protected void applyParsedConfig(ModConfig handler, Path configFile, @Nullable ParsedConfig parsed)
+    {
+        final long startTime = System.nanoTime();
+
+        boolean readable = parsed != null ? parsed.readable : Files.isReadable(configFile);
+
+        if (readable == false)
+        {
+            MaLiLib.LOGGER.warn("ModConfig#loadFromFile(): File '{}' is not readable", configFile.toAbsolutePath());
+        }
+        else if (parsed != null && parsed.applyTask != null)
+        {
+            parsed.applyTask.run();
+        }
+        else
+        {
+            handler.loadFromFile(configFile);
+        }
+
+        handler.onPostLoad();
+
+        MaLiLib.debugLog("Loaded configs for mod {} - parse: {} ms, apply: {} ms", handler.getModInfo().getModId(),
+                         parsed != null ? formatDuration(parsed.parseTime) : "-",
+                         formatDuration(System.nanoTime() - startTime));
+    }
+
+    protected static ParsedConfig parseConfigFile(ModConfig handler, Path configFile)
+    {
+        final long startTime = System.nanoTime();
+        boolean readable = Files.isReadable(configFile);
+        Runnable applyTask = readable ? handler.createLoadTask(configFile) : null;
+
+        return new ParsedConfig(readable, applyTask, System.nanoTime() - startTime);
+    }
+
+    @Nullable
+    protected static ParsedConfig joinParseTask(ForkJoinTask<ParsedConfig> task, ModConfig handler)
+    {
+        try
+        {
+            return task.join();
+        }
+        catch (Exception e)
+        {
+            // The configs will be loaded normally on this thread instead
+            MaLiLib.LOGGER.warn("Failed to parse the configs of mod '{}' in parallel", handler.getModInfo().getModId(), e);
+            return null;
+        }
+    }
+
+    protected static String formatDuration(long nanos)
+    {
+        return String.format("%.2f", (double) nanos / 1000000.0);
     }
 
     /**
@@ -100,4 +236,18 @@ public class ConfigManagerImpl implements ConfigManager
 
         return savedSomething;
     }
+
+    protected static class ParsedConfig
+    {
+        public final boolean readable;
+        @Nullable public final Runnable applyTask;
+        public final long parseTime;
+
+        public ParsedConfig(boolean readable, @Nullable Runnable applyTask, long parseTime)
+        {
+            this.readable = readable;
+            this.applyTask = applyTask;
+            this.parseTime = parseTime;
+        }
+    }
 }
@@ -1,18 +1,31 @@
 package malilib.config;
 
+import java.lang.reflect.Method;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import javax.annotation.Nullable;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+import malilib.MaLiLibConfigs;
 import malilib.config.category.ConfigOptionCategory;
+import malilib.config.util.AsyncConfigSaver;
+import malilib.config.util.BinaryConfigSnapshot;
 import malilib.config.util.JsonConfigUtils;
+import malilib.config.value.FileWriteType;
 import malilib.util.BackupUtils;
 import malilib.util.data.ModInfo;
+import malilib.util.data.SimpleBooleanStorage;
+import malilib.util.data.json.JsonUtils;
 
 public class JsonModConfig extends BaseModConfig
 {
     @Nullable protected ConfigDataUpdater configDataUpdater;
+    protected BooleanSupplier binarySnapshotSupplier = MaLiLibConfigs.Generic.CONFIG_BINARY_SNAPSHOTS::getBooleanValue;
+    protected String snapshotDirectoryName = "snapshots";
+    protected volatile boolean loadTaskUsesSnapshot;
 
     public JsonModConfig(ModInfo modInfo,
                          int configVersion,
@@ -46,6 +59,28 @@ public class JsonModConfig extends BaseModConfig
         return this;
     }
 
+    /**
+     * Sets whether a binary snapshot of the config values should be kept
+     * next to the JSON file, for faster loading on the next start.
+     * See {@link BinaryConfigSnapshot}.
+     */
+    public JsonModConfig setBinarySnapshotSupplier(BooleanSupplier binarySnapshotSupplier)
+    {
+        this.binarySnapshotSupplier = binarySnapshotSupplier;
+        return this;
+    }
+
+    protected boolean useBinarySnapshot()
+    {
+        // The config data updater needs the JSON data, so the snapshot can't be used with it
+        return this.configDataUpdater == null && this.binarySnapshotSupplier.getAsBoolean();
+    }
+
+    protected Path getSnapshotFile(Path configFile)
+    {
+        return configFile.resolveSibling(this.snapshotDirectoryName).resolve(configFile.getFileName() + ".bin");
+    }
+
     protected void updateConfigDataBeforeLoading(int configVersion, JsonObject root)
     {
         this.savedConfigVersion = configVersion;
@@ -59,7 +94,119 @@ public class JsonModConfig extends BaseModConfig
     @Override
     public void loadFromFile(Path configFile)
     {
-        JsonConfigUtils.loadFromFile(configFile, this.getConfigOptionCategories(), this::updateConfigDataBeforeLoading);
+        boolean useSnapshot = this.useBinarySnapshot();
+
+        if (useSnapshot)
+        {
+            BinaryConfigSnapshot snapshot = BinaryConfigSnapshot.read(this.getSnapshotFile(configFile), configFile);
+
+            if (snapshot != null && this.applySnapshot(snapshot))
+            {
+                return;
+            }
+        }
+
+        // The config data updater needs the full root object, so the streaming reader can't be used with it
+        if (this.configDataUpdater == null)
+        {
+            // Read before the file, so that the snapshot doesn't shadow any edits made after this
+            BasicFileAttributes attributes = useSnapshot ? BinaryConfigSnapshot.readJsonFileAttributes(configFile) : null;
+            SimpleBooleanStorage loaded = new SimpleBooleanStorage(false);
+
+            JsonConfigUtils.loadFromFileStreaming(configFile, this.getConfigOptionCategories(), (v) -> {
+                this.savedConfigVersion = v;
+                loaded.setBooleanValue(true);
+            });
+
+            if (attributes != null && loaded.getBooleanValue())
+            {
+                this.scheduleSnapshotWrite(configFile, attributes);
+            }
+        }
+        else
+        {
+            this.applyLoadedData(JsonUtils.parseJsonFile(configFile));
+        }
+    }
+
+    @Override
+    public void prepareLoadTask()
+    {
+        // The snapshot option is a malilib config, which may be getting loaded on the client thread
+        // at the same time as the load task runs, so it's read here before the task is started
+        this.loadTaskUsesSnapshot = this.useBinarySnapshot();
+    }
+
+    @Override
+    @Nullable
+    public Runnable createLoadTask(Path configFile)
+    {
+        // Let a custom loadFromFile(Path) implementation load the configs on the client thread
+        if (this.overridesMethod("loadFromFile", Path.class))
+        {
+            return null;
+        }
+
+        final boolean useSnapshot = this.loadTaskUsesSnapshot;
+
+        if (useSnapshot)
+        {
+            final BinaryConfigSnapshot snapshot = BinaryConfigSnapshot.read(this.getSnapshotFile(configFile), configFile);
+
+            if (snapshot != null)
+            {
+                return () -> {
+                    if (this.applySnapshot(snapshot) == false)
+                    {
+                        this.loadFromFile(configFile);
+                    }
+                };
+            }
+        }
+
+        final BasicFileAttributes attributes = useSnapshot ? BinaryConfigSnapshot.readJsonFileAttributes(configFile) : null;
+        final JsonElement element = JsonUtils.parseJsonFile(configFile);
+
+        return () -> {
+            this.applyLoadedData(element);
+
+            if (attributes != null && element != null && element.isJsonObject())
+            {
+                this.scheduleSnapshotWrite(configFile, attributes);
+            }
+        };
+    }
+
+    protected boolean applySnapshot(BinaryConfigSnapshot snapshot)
+    {
+        if (snapshot.applyTo(this.getConfigOptionCategories()))
+        {
+            this.savedConfigVersion = snapshot.getConfigVersion();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes a new snapshot of the just loaded config values in the background,
+     * so that the next load can use it instead of the JSON file.
+     * @param jsonAttributes the attributes of the JSON file, read before the file was read
+     */
+    protected void scheduleSnapshotWrite(final Path configFile, final BasicFileAttributes jsonAttributes)
+    {
+        final Path snapshotFile = this.getSnapshotFile(configFile);
+        final int configVersion = this.savedConfigVersion;
+        final JsonObject root = new JsonObject();
+
+        JsonConfigUtils.writeAllConfigs(root, this.getConfigOptionCategories(), configVersion);
+
+        AsyncConfigSaver.INSTANCE.scheduleSave(snapshotFile, () -> BinaryConfigSnapshot.write(snapshotFile, jsonAttributes, root, configVersion));
+    }
+
+    protected void applyLoadedData(@Nullable JsonElement element)
+    {
+        JsonConfigUtils.loadFromJson(element, this.getConfigOptionCategories(), this::updateConfigDataBeforeLoading);
 
         if (this.configDataUpdater != null)
         {
@@ -74,11 +221,20 @@ public class JsonModConfig extends BaseModConfig
         Path backupDirectory = this.getConfigBackupDirectory(configDirectory);
         int currentConfigVersion = this.getConfigVersion();
 
-        if (this.savedConfigVersion != currentConfigVersion)
+        this.createVersionBackupIfNeeded(configFile, backupDirectory, currentConfigVersion);
+
+        boolean success = this.writeConfigFile(configFile, backupDirectory, currentConfigVersion);
+
+        if (success)
         {
-            BackupUtils.createBackupFileForVersion(configFile, backupDirectory, this.savedConfigVersion);
+            this.savedConfigVersion = currentConfigVersion;
         }
 
+        return success;
+    }
+
+    protected boolean writeConfigFile(Path configFile, Path backupDirectory, int currentConfigVersion)
+    {
         int backupCount = this.backupCountSupplier.getAsInt();
 
         if (backupCount > 0)
@@ -87,14 +243,105 @@ public class JsonModConfig extends BaseModConfig
             BackupUtils.createRollingBackup(configFile, backupDirectory, ".bak_", backupCount, antiDuplicate);
         }
 
-        boolean success = JsonConfigUtils.saveToFile(configFile, this.getConfigOptionCategories(), currentConfigVersion);
+        FileWriteType writeType = MaLiLibConfigs.Generic.CONFIG_WRITE_METHOD.getValue();
 
-        if (success)
+        // The snapshot is created from the JSON tree, so the streaming writer can't be used with it
+        if (this.useBinarySnapshot())
         {
-            this.savedConfigVersion = currentConfigVersion;
+            JsonObject root = new JsonObject();
+            boolean allConfigsWritten = JsonConfigUtils.writeAllConfigs(root, this.getConfigOptionCategories(), currentConfigVersion);
+
+            if (JsonUtils.writeJsonToFileStreaming(root, configFile, JsonUtils.GSON, writeType))
+            {
+                BinaryConfigSnapshot.write(this.getSnapshotFile(configFile), configFile, root, currentConfigVersion);
+                return allConfigsWritten;
+            }
+
+            return false;
         }
 
-        return success;
+        return JsonConfigUtils.saveToFileStreaming(configFile, this.getConfigOptionCategories(), currentConfigVersion, writeType);
+    }
+
+    @Override
+    @Nullable
+    public BooleanSupplier createSaveTask(Path configDirectory, Path configFile)
+    {
+        // Let a custom save implementation save the configs on the client thread
+        if (this.overridesMethod("saveToFile", Path.class, Path.class) ||
+            this.overridesMethod("writeConfigFile", Path.class, Path.class, int.class))
+        {
+            return null;
+        }
+
+        final Path backupDirectory = this.getConfigBackupDirectory(configDirectory);
+        final int currentConfigVersion = this.getConfigVersion();
+        final int backupCount = this.backupCountSupplier.getAsInt();
+        final boolean antiDuplicate = this.antiDuplicateSupplier.getAsBoolean();
+        final FileWriteType writeType = MaLiLibConfigs.Generic.CONFIG_WRITE_METHOD.getValue();
+        final Path snapshotFile = this.useBinarySnapshot() ? this.getSnapshotFile(configFile) : null;
+
+        final JsonObject root = new JsonObject();
+        final boolean allConfigsWritten = JsonConfigUtils.writeAllConfigs(root, this.getConfigOptionCategories(), currentConfigVersion);
+
+        return () -> {
+            // The version backup is checked when the task runs, so that if this task replaced
+            // an earlier save that never ran, the file on disk still gets backed up.
+            // The saved version is only updated after the new file has been written.
+            this.createVersionBackupIfNeeded(configFile, backupDirectory, currentConfigVersion);
+
+            if (backupCount > 0)
+            {
+                BackupUtils.createRollingBackup(configFile, backupDirectory, ".bak_", backupCount, antiDuplicate);
+            }
+
+            if (JsonUtils.writeJsonToFileStreaming(root, configFile, JsonUtils.GSON, writeType))
+            {
+                this.savedConfigVersion = currentConfigVersion;
+
+                if (snapshotFile != null)
+                {
+                    BinaryConfigSnapshot.write(snapshotFile, configFile, root, currentConfigVersion);
+                }
+
+                return allConfigsWritten;
+            }
+
+            return false;
+        };
+    }
+
+    /**
+     * @return true if a subclass overrides the given method of this class,
+     *         in which case the async load and save tasks can't be used in place of it
+     */
+    protected boolean overridesMethod(String name, Class<?>... parameterTypes)
+    {
+        for (Class<?> clazz = this.getClass(); clazz != JsonModConfig.class && clazz != null; clazz = clazz.getSuperclass())
+        {
+            try
+            {
+                Method method = clazz.getDeclaredMethod(name, parameterTypes);
+
+                if (method.isBridge() == false)
+                {
+                    return true;
+                }
+            }
+            catch (NoSuchMethodException ignore)
+            {
+            }
+        }
+
+        return false;
+    }
+
+    protected void createVersionBackupIfNeeded(Path configFile, Path backupDirectory, int currentConfigVersion)
+    {
+        if (this.savedConfigVersion != currentConfigVersion)
+        {
+            BackupUtils.createBackupFileForVersion(configFile, backupDirectory, this.savedConfigVersion);
+        }
     }
 
     public interface ConfigDataUpdater
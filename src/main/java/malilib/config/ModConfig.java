@@ -3,10 +3,14 @@ package malilib.config;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import javax.annotation.Nullable;
 
 import malilib.MaLiLib;
+import malilib.MaLiLibConfigs;
 import malilib.config.category.ConfigOptionCategory;
 import malilib.config.option.ConfigOption;
+import malilib.config.util.AsyncConfigSaver;
 import malilib.config.util.ConfigUtils;
 import malilib.util.FileUtils;
 import malilib.util.data.ModInfo;
@@ -47,6 +51,30 @@ public interface ModConfig
      */
     void loadFromFile(Path configFile);
 
+    /**
+     * Called on the client thread before {@link #createLoadTask(Path)} gets called on a worker thread.
+     * Any settings (including other config values) that the load task depends on should be captured here.
+     */
+    default void prepareLoadTask()
+    {
+    }
+
+    /**
+     * Reads and parses the provided config file, without applying anything to the configs yet.
+     * This is called on a worker thread when the configs of all mods are loaded in parallel,
+     * so it must not access the config options or show any in-game messages.
+     * {@link #prepareLoadTask()} is called on the client thread before this.
+     * @param configFile the file to load the configs from
+     * @return a task that applies the parsed data to the configs, which is run on the client thread,
+     *         or null if this config handler doesn't support parallel loading. In that case the configs
+     *         are loaded on the client thread via {@link #loadFromFile(Path)}.
+     */
+    @Nullable
+    default Runnable createLoadTask(Path configFile)
+    {
+        return null;
+    }
+
     /**
      * Saves all the configs to the provided config file
      * @param configDirectory the directory where the configs are being saved to
@@ -55,6 +83,23 @@ public interface ModConfig
      */
     boolean saveToFile(Path configDirectory, Path configFile);
 
+    /**
+     * Creates a task for saving the configs to the provided config file on a background thread.
+     * The config values must be captured into a snapshot already in this method,
+     * which is called on the client thread. The returned task should then only do the
+     * file operations, and it must not access the config options or show any in-game messages.
+     * @param configDirectory the directory where the configs are being saved to
+     * @param configFile the file to save the configs to
+     * @return the save task, which returns true on success, or null if this
+     *         config handler doesn't support async saving. In that case the configs
+     *         are saved on the client thread via {@link #saveToFile(Path, Path)}.
+     */
+    @Nullable
+    default BooleanSupplier createSaveTask(Path configDirectory, Path configFile)
+    {
+        return null;
+    }
+
     /**
      * Returns the directory where the configs should be saved
      */
@@ -100,6 +145,9 @@ public interface ModConfig
     {
         Path configFile = this.getConfigDirectory().resolve(this.getConfigFileName());
 
+        // Make sure that any pending async saves have been written before reading the file
+        AsyncConfigSaver.INSTANCE.flush();
+
         if (Files.isReadable(configFile))
         {
             this.loadFromFile(configFile);
@@ -121,7 +169,10 @@ public interface ModConfig
     }
 
      /**
-     * Called to unconditionally save all the configs to a file
+     * Called to unconditionally save all the configs to a file.
+     * If async saving is enabled and supported by this config handler, then the
+     * config values are captured now, but the file is written on a background thread.
+     * @return true if the configs were saved or the save was scheduled successfully
      */
     default boolean saveToFile()
     {
@@ -129,7 +180,23 @@ public interface ModConfig
 
         if (Files.isDirectory(dir))
         {
-            return this.saveToFile(dir, dir.resolve(this.getConfigFileName()));
+            Path configFile = dir.resolve(this.getConfigFileName());
+
+            if (MaLiLibConfigs.Generic.CONFIG_ASYNC_SAVING.getBooleanValue())
+            {
+                BooleanSupplier saveTask = this.createSaveTask(dir, configFile);
+
+                if (saveTask != null)
+                {
+                    AsyncConfigSaver.INSTANCE.scheduleSave(configFile, saveTask);
+                    return true;
+                }
+            }
+
+            // Don't let an older pending async save overwrite this save afterwards
+            AsyncConfigSaver.INSTANCE.flush();
+
+            return this.saveToFile(dir, configFile);
         }
         else
         {
@@ -1,6 +1,7 @@
 package malilib.config.category;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
 import malilib.config.option.ConfigOption;
 import malilib.util.data.ModInfo;
@@ -11,6 +12,7 @@ public class BaseConfigOptionCategory implements ConfigOptionCategory
     protected final String name;
     protected final boolean saveToFile;
     protected final List<? extends ConfigOption<?>> configs;
+    @Nullable protected ConfigOptionNameIndex nameIndex;
 
     public BaseConfigOptionCategory(ModInfo modInfo,
                                     String name,
@@ -47,6 +49,18 @@ public class BaseConfigOptionCategory implements ConfigOptionCategory
         return this.configs;
     }
 
+    @Override
+    public ConfigOptionNameIndex getConfigOptionNameIndex()
+    {
+        // Rebuild the index if configs have been added to the list afterwards
+        if (this.nameIndex == null || this.nameIndex.getConfigCount() != this.configs.size())
+        {
+            this.nameIndex = new ConfigOptionNameIndex(this.configs);
+        }
+
+        return this.nameIndex;
+    }
+
     /**
      * Creates a normal config category that is shown on the config screen
      * and saved to a config file normally.
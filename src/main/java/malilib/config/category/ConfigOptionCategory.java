@@ -26,6 +26,15 @@ public interface ConfigOptionCategory extends NameIdentifiable
      */
     List<? extends ConfigOption<?>> getConfigOptions();
 
+    /**
+     * @return An index of the config options in this category by their names.
+     * This is used when reading the configs from a file via the streaming reader.
+     */
+    default ConfigOptionNameIndex getConfigOptionNameIndex()
+    {
+        return new ConfigOptionNameIndex(this.getConfigOptions());
+    }
+
     /**
      * Resets all the contained config options to their default values
      */
@@ -0,0 +1,65 @@
+package malilib.config.category;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+import malilib.config.option.ConfigOption;
+
+/**
+ * A lookup from the config names used in the config files to the config options of one category.
+ * This is used by the streaming config reader to dispatch each value directly to its config.
+ * The old names are only indexed as names, the reader collects their values and then resolves
+ * them per config in the {@link ConfigOption#getOldNames()} order, the same as
+ * {@link malilib.config.util.JsonConfigUtils#tryLoadConfig(com.google.gson.JsonObject, ConfigOption, String)}.
+ */
+public class ConfigOptionNameIndex
+{
+    protected final Map<String, ConfigOption<?>> configsByName = new HashMap<>();
+    protected final Set<String> oldNames = new HashSet<>();
+    protected final int configCount;
+
+    public ConfigOptionNameIndex(List<? extends ConfigOption<?>> configs)
+    {
+        this.configCount = configs.size();
+
+        for (ConfigOption<?> config : configs)
+        {
+            this.configsByName.putIfAbsent(config.getName(), config);
+        }
+
+        for (ConfigOption<?> config : configs)
+        {
+            this.oldNames.addAll(config.getOldNames());
+        }
+    }
+
+    /**
+     * @return the config that currently uses the given name, if any
+     */
+    @Nullable
+    public ConfigOption<?> getConfigByName(String name)
+    {
+        return this.configsByName.get(name);
+    }
+
+    /**
+     * @return true if any of the configs used to go by the given name.
+     *         Note that the name may also be the current name of some other config.
+     */
+    public boolean isOldName(String name)
+    {
+        return this.oldNames.contains(name);
+    }
+
+    /**
+     * @return the number of configs in the list that this index was built from
+     */
+    public int getConfigCount()
+    {
+        return this.configCount;
+    }
+}
@@ -0,0 +1,168 @@
+package malilib.config.util;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import javax.annotation.Nullable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import malilib.MaLiLib;
+
+/**
+ * Writes the config files on a background thread.
+ * <br><br>
+ * The config data is captured into a snapshot on the client thread (see
+ * {@link malilib.config.ModConfig#createSaveTask(Path, Path)}), and the returned task
+ * then does the file operations (backups and the actual writing) on the saver thread.
+ * If a new save is requested for a file that still has an earlier save waiting,
+ * then the earlier save is replaced, so only the latest snapshot gets written.
+ * The saves are run one at a time, in the order they were first requested.
+ * <br><br>
+ * Anything that reads the config files should call {@link #flush()} first.
+ * The pending saves are also flushed when the game shuts down.
+ */
+public class AsyncConfigSaver
+{
+    public static final AsyncConfigSaver INSTANCE = new AsyncConfigSaver();
+
+    protected static final long FLUSH_TIMEOUT_SECONDS = 60L;
+
+    protected final Map<Path, BooleanSupplier> pendingSaves = new LinkedHashMap<>();
+    @Nullable protected ExecutorService executor;
+    @Nullable protected volatile Thread saverThread;
+    protected boolean drainScheduled;
+    protected long coalescedSaveCount;
+
+    /**
+     * Schedules the save task to be run on the saver thread.
+     * Replaces the previous pending save task for the same file, if any.
+     */
+    public void scheduleSave(Path configFile, BooleanSupplier saveTask)
+    {
+        synchronized (this.pendingSaves)
+        {
+            if (this.pendingSaves.put(configFile, saveTask) != null)
+            {
+                ++this.coalescedSaveCount;
+                MaLiLib.debugLog("AsyncConfigSaver: Replaced a pending save for '{}'", configFile);
+            }
+
+            if (this.drainScheduled == false)
+            {
+                this.drainScheduled = true;
+                this.getExecutor().execute(this::runPendingSaves);
+            }
+        }
+    }
+
+    /**
+     * @return true if there are saves that have not finished yet
+     */
+    public boolean hasPendingSaves()
+    {
+        synchronized (this.pendingSaves)
+        {
+            return this.drainScheduled;
+        }
+    }
+
+    public long getCoalescedSaveCount()
+    {
+        synchronized (this.pendingSaves)
+        {
+            return this.coalescedSaveCount;
+        }
+    }
+
+    /**
+     * Blocks until all the currently pending saves have been written.
+     * If called from a save task on the saver thread, then the pending saves are run directly.
+     */
+    public void flush()
+    {
+        if (this.hasPendingSaves() == false)
+        {
+            return;
+        }
+
+        // Waiting for the single saver thread from the saver thread itself would just time out
+        if (Thread.currentThread() == this.saverThread)
+        {
+            this.runPendingSaves();
+            return;
+        }
+
+        // The saver is single threaded, so this runs after the already scheduled saves
+        Future<?> future = this.getExecutor().submit(() -> {});
+
+        try
+        {
+            future.get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException | ExecutionException | TimeoutException e)
+        {
+            MaLiLib.LOGGER.warn("AsyncConfigSaver: Failed to wait for the pending config saves to finish", e);
+        }
+    }
+
+    protected void runPendingSaves()
+    {
+        this.saverThread = Thread.currentThread();
+
+        while (true)
+        {
+            Path configFile;
+            BooleanSupplier saveTask;
+
+            synchronized (this.pendingSaves)
+            {
+                Iterator<Map.Entry<Path, BooleanSupplier>> iter = this.pendingSaves.entrySet().iterator();
+
+                if (iter.hasNext() == false)
+                {
+                    this.drainScheduled = false;
+                    return;
+                }
+
+                Map.Entry<Path, BooleanSupplier> entry = iter.next();
+                configFile = entry.getKey();
+                saveTask = entry.getValue();
+                iter.remove();
+            }
+
+            try
+            {
+                if (saveTask.getAsBoolean() == false)
+                {
+                    MaLiLib.LOGGER.warn("AsyncConfigSaver: Failed to save the config file '{}'", configFile.toAbsolutePath());
+                }
+            }
+            catch (Exception e)
+            {
+                MaLiLib.LOGGER.warn("AsyncConfigSaver: Exception while saving the config file '{}'", configFile.toAbsolutePath(), e);
+            }
+        }
+    }
+
+    protected synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+        {
+            this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                                                                      .setNameFormat("malilib config saver")
+                                                                      .setDaemon(true).build());
+
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "malilib config save flush"));
+        }
+
+        return this.executor;
+    }
+}
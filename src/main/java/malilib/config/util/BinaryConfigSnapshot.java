@@ -0,0 +1,502 @@
+package malilib.config.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import malilib.MaLiLib;
+import malilib.config.category.ConfigOptionCategory;
+import malilib.config.option.ConfigOption;
+import malilib.util.FileUtils;
+
+/**
+ * A compact binary copy of the values in a JSON config file, which can be loaded
+ * much faster than re-parsing the pretty-printed JSON file.
+ * <br><br>
+ * The values are keyed by a 64-bit hash of the category name and the config name,
+ * and each value is stored in a binary encoding of its JSON element, so the existing
+ * config serializers are used for both formats. The snapshot stores the last modified
+ * time and the size of the JSON file that it was created from, and it is only used if
+ * the JSON file still matches those. This means that the JSON file always stays the
+ * source of truth, and any manual edits to it invalidate the snapshot.
+ * The whole snapshot is also protected by a CRC32 checksum.
+ */
+public class BinaryConfigSnapshot
+{
+    protected static final int MAGIC = 0x4D4C4353; // "MLCS"
+    protected static final int FORMAT_VERSION = 1;
+
+    protected static final byte TYPE_NULL          = 0;
+    protected static final byte TYPE_TRUE          = 1;
+    protected static final byte TYPE_FALSE         = 2;
+    protected static final byte TYPE_LONG          = 3;
+    protected static final byte TYPE_DOUBLE        = 4;
+    protected static final byte TYPE_NUMBER_STRING = 5;
+    protected static final byte TYPE_STRING        = 6;
+    protected static final byte TYPE_ARRAY         = 7;
+    protected static final byte TYPE_OBJECT        = 8;
+
+    protected final int configVersion;
+    protected final Long2ObjectOpenHashMap<JsonElement> values;
+
+    protected BinaryConfigSnapshot(int configVersion, Long2ObjectOpenHashMap<JsonElement> values)
+    {
+        this.configVersion = configVersion;
+        this.values = values;
+    }
+
+    /**
+     * @return the config version of the JSON data that this snapshot was created from
+     */
+    public int getConfigVersion()
+    {
+        return this.configVersion;
+    }
+
+    public int getValueCount()
+    {
+        return this.values.size();
+    }
+
+    /**
+     * Applies the snapshot values to the configs in the given categories.
+     * The configs that don't have a value in the snapshot are reset to their defaults,
+     * in the same way as when loading from the JSON file. Also like the JSON loading,
+     * the values stored under the old names of renamed configs are used, if there is
+     * no value for the current name.
+     * @return true on success, or false if the config names of the given categories
+     *         have a hash collision, in which case nothing was applied, and the
+     *         configs need to be loaded from the JSON file instead.
+     */
+    public boolean applyTo(List<ConfigOptionCategory> categories)
+    {
+        Long2ObjectOpenHashMap<String> keys = new Long2ObjectOpenHashMap<>();
+
+        for (ConfigOptionCategory category : categories)
+        {
+            String categoryName = category.getName();
+
+            for (ConfigOption<?> config : category.getConfigOptions())
+            {
+                String key = categoryName + "/" + config.getName();
+                String previous = keys.put(getKeyHash(categoryName, config.getName()), key);
+
+                if (previous != null && previous.equals(key) == false)
+                {
+                    MaLiLib.LOGGER.warn("BinaryConfigSnapshot: Config key hash collision between '{}' and '{}'", previous, key);
+                    return false;
+                }
+            }
+        }
+
+        for (ConfigOptionCategory category : categories)
+        {
+            String categoryName = category.getName();
+            List<? extends ConfigOption<?>> configs = category.getConfigOptions();
+            boolean hasData = false;
+
+            for (ConfigOption<?> config : configs)
+            {
+                if (this.getValue(categoryName, config) != null)
+                {
+                    hasData = true;
+                    break;
+                }
+            }
+
+            // Matches the JSON loading, where a missing category object just resets the configs
+            if (hasData == false)
+            {
+                category.resetAllOptionsToDefaults();
+                continue;
+            }
+
+            for (ConfigOption<?> config : configs)
+            {
+                JsonElement value = this.getValue(categoryName, config);
+
+                if (value != null)
+                {
+                    JsonConfigUtils.loadConfigValue(config, value, categoryName);
+                }
+                else
+                {
+                    JsonConfigUtils.resetConfigNotLoaded(config);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the value for the config, using the same name order as
+     *         {@link JsonConfigUtils#tryLoadConfig(JsonObject, ConfigOption, String)}
+     */
+    @Nullable
+    protected JsonElement getValue(String categoryName, ConfigOption<?> config)
+    {
+        JsonElement value = this.values.get(getKeyHash(categoryName, config.getName()));
+
+        if (value == null)
+        {
+            for (String oldName : config.getOldNames())
+            {
+                value = this.values.get(getKeyHash(categoryName, oldName));
+
+                if (value != null)
+                {
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the attributes of the JSON file, for {@link #write(Path, BasicFileAttributes, JsonObject, int)},
+     *         or null if they can't be read
+     */
+    @Nullable
+    public static BasicFileAttributes readJsonFileAttributes(Path jsonFile)
+    {
+        try
+        {
+            return Files.readAttributes(jsonFile, BasicFileAttributes.class);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot file, if it exists and is still valid for the given JSON config file.
+     * This doesn't touch any configs, so it can be called from any thread.
+     * @return the snapshot, or null if it doesn't exist, or is out of date or corrupt
+     */
+    @Nullable
+    public static BinaryConfigSnapshot read(Path snapshotFile, Path jsonFile)
+    {
+        if (Files.isRegularFile(snapshotFile) == false || Files.isRegularFile(jsonFile) == false)
+        {
+            return null;
+        }
+
+        try
+        {
+            byte[] data = Files.readAllBytes(snapshotFile);
+
+            if (data.length < 4 || getChecksum(data, data.length - 4) != readInt(data, data.length - 4))
+            {
+                MaLiLib.LOGGER.warn("BinaryConfigSnapshot: Checksum mismatch in '{}'", snapshotFile.toAbsolutePath());
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION)
+            {
+                return null;
+            }
+
+            int configVersion = in.readInt();
+            long jsonLastModified = in.readLong();
+            long jsonSize = in.readLong();
+            BasicFileAttributes attributes = Files.readAttributes(jsonFile, BasicFileAttributes.class);
+
+            if (attributes.lastModifiedTime().toMillis() != jsonLastModified || attributes.size() != jsonSize)
+            {
+                MaLiLib.debugLog("BinaryConfigSnapshot: The JSON file '{}' has changed, not using the snapshot", jsonFile);
+                return null;
+            }
+
+            int count = in.readInt();
+            Long2ObjectOpenHashMap<JsonElement> values = new Long2ObjectOpenHashMap<>(count);
+
+            for (int i = 0; i < count; ++i)
+            {
+                long keyHash = in.readLong();
+                values.put(keyHash, readElement(in));
+            }
+
+            return new BinaryConfigSnapshot(configVersion, values);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("BinaryConfigSnapshot: Failed to read the snapshot file '{}'", snapshotFile.toAbsolutePath(), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a snapshot of the given config data root object, which needs to be in the format
+     * created by {@link JsonConfigUtils#writeAllConfigs(JsonObject, List, int)}. The JSON file must
+     * already be written, as its current modification time and size are stored in the snapshot.
+     * This doesn't touch any configs, so it can be called from any thread.
+     * @param configVersion the config version of the JSON data in the file
+     * @return true on success
+     */
+    public static boolean write(Path snapshotFile, Path jsonFile, JsonObject root, int configVersion)
+    {
+        BasicFileAttributes attributes = readJsonFileAttributes(jsonFile);
+        return attributes != null && write(snapshotFile, attributes, root, configVersion);
+    }
+
+    /**
+     * Writes a snapshot of the given config data root object, for the version of the
+     * JSON file that had the given attributes. When the snapshot is created from the values
+     * that were loaded from the file, then the attributes need to be read before reading the file,
+     * so that any edits made to the file after that will invalidate the snapshot.
+     * This doesn't touch any configs, so it can be called from any thread.
+     * @param configVersion the config version of the JSON data in the file
+     * @return true on success
+     */
+    public static boolean write(Path snapshotFile, BasicFileAttributes attributes, JsonObject root, int configVersion)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            DataOutputStream out = new DataOutputStream(bytes);
+            int count = 0;
+
+            for (Map.Entry<String, JsonElement> categoryEntry : root.entrySet())
+            {
+                if (categoryEntry.getValue().isJsonObject())
+                {
+                    count += categoryEntry.getValue().getAsJsonObject().entrySet().size();
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(configVersion);
+            out.writeLong(attributes.lastModifiedTime().toMillis());
+            out.writeLong(attributes.size());
+            out.writeInt(count);
+
+            for (Map.Entry<String, JsonElement> categoryEntry : root.entrySet())
+            {
+                if (categoryEntry.getValue().isJsonObject() == false)
+                {
+                    continue;
+                }
+
+                String categoryName = categoryEntry.getKey();
+
+                for (Map.Entry<String, JsonElement> entry : categoryEntry.getValue().getAsJsonObject().entrySet())
+                {
+                    out.writeLong(getKeyHash(categoryName, entry.getKey()));
+                    writeElement(out, entry.getValue());
+                }
+            }
+
+            out.writeInt(getChecksum(bytes.toByteArray(), bytes.size()));
+            out.flush();
+
+            Path dir = snapshotFile.getParent();
+
+            if (dir != null && FileUtils.createDirectoriesIfMissing(dir) == false)
+            {
+                return false;
+            }
+
+            Path tmpFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            Files.write(tmpFile, bytes.toByteArray());
+
+            return FileUtils.replaceAtomically(tmpFile, snapshotFile);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("BinaryConfigSnapshot: Failed to write the snapshot file '{}'", snapshotFile.toAbsolutePath(), e);
+        }
+
+        return false;
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the category and config names
+     */
+    public static long getKeyHash(String categoryName, String configName)
+    {
+        long hash = 0xcbf29ce484222325L;
+        hash = hashString(hash, categoryName);
+        hash = (hash ^ '/') * 0x100000001b3L;
+        return hashString(hash, configName);
+    }
+
+    protected static long hashString(long hash, String str)
+    {
+        final int length = str.length();
+
+        for (int i = 0; i < length; ++i)
+        {
+            hash = (hash ^ str.charAt(i)) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    protected static int getChecksum(byte[] data, int length)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    protected static int readInt(byte[] data, int offset)
+    {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) |
+               ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    protected static void writeElement(DataOutputStream out, JsonElement element) throws IOException
+    {
+        if (element.isJsonObject())
+        {
+            JsonObject obj = element.getAsJsonObject();
+            out.writeByte(TYPE_OBJECT);
+            out.writeInt(obj.entrySet().size());
+
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet())
+            {
+                writeString(out, entry.getKey());
+                writeElement(out, entry.getValue());
+            }
+        }
+        else if (element.isJsonArray())
+        {
+            JsonArray arr = element.getAsJsonArray();
+            out.writeByte(TYPE_ARRAY);
+            out.writeInt(arr.size());
+
+            for (JsonElement el : arr)
+            {
+                writeElement(out, el);
+            }
+        }
+        else if (element.isJsonPrimitive())
+        {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+
+            if (primitive.isBoolean())
+            {
+                out.writeByte(primitive.getAsBoolean() ? TYPE_TRUE : TYPE_FALSE);
+            }
+            else if (primitive.isNumber())
+            {
+                Number number = primitive.getAsNumber();
+
+                if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte)
+                {
+                    out.writeByte(TYPE_LONG);
+                    out.writeLong(number.longValue());
+                }
+                else if (number instanceof Double || number instanceof Float)
+                {
+                    out.writeByte(TYPE_DOUBLE);
+                    out.writeDouble(number.doubleValue());
+                }
+                else
+                {
+                    // Lazily parsed numbers, BigDecimal etc. keep their exact string representation
+                    out.writeByte(TYPE_NUMBER_STRING);
+                    writeString(out, primitive.getAsString());
+                }
+            }
+            else
+            {
+                out.writeByte(TYPE_STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+        else
+        {
+            out.writeByte(TYPE_NULL);
+        }
+    }
+
+    protected static JsonElement readElement(DataInputStream in) throws IOException
+    {
+        byte type = in.readByte();
+
+        switch (type)
+        {
+            case TYPE_NULL:             return JsonNull.INSTANCE;
+            case TYPE_TRUE:             return new JsonPrimitive(true);
+            case TYPE_FALSE:            return new JsonPrimitive(false);
+            case TYPE_LONG:             return new JsonPrimitive(in.readLong());
+            case TYPE_DOUBLE:           return new JsonPrimitive(in.readDouble());
+            case TYPE_NUMBER_STRING:    return new JsonPrimitive(new BigDecimal(readString(in)));
+            case TYPE_STRING:           return new JsonPrimitive(readString(in));
+            case TYPE_ARRAY:
+            {
+                int size = in.readInt();
+                JsonArray arr = new JsonArray();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    arr.add(readElement(in));
+                }
+
+                return arr;
+            }
+            case TYPE_OBJECT:
+            {
+                int size = in.readInt();
+                JsonObject obj = new JsonObject();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    String key = readString(in);
+                    obj.add(key, readElement(in));
+                }
+
+                return obj;
+            }
+            default:
+                throw new IOException("Invalid element type " + type);
+        }
+    }
+
+    protected static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0 || length > in.available())
+        {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -3,14 +3,13 @@ package malilib.config.util;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -30,6 +29,7 @@ import malilib.config.category.ConfigOptionCategory;
 import malilib.config.option.BaseGenericConfig;
 import malilib.config.option.ConfigOption;
 import malilib.config.serialization.JsonConfigSerializerRegistry.ConfigFromJsonOverrider;
+import malilib.config.util.ConfigLockIndex.StringTest;
 import malilib.input.Hotkey;
 import malilib.input.HotkeyManagerImpl;
 import malilib.overlay.message.MessageDispatcher;
@@ -49,6 +49,7 @@ public class ConfigLockHandler
     protected final Map<ModInfo, List<Hotkey>> allHotkeys = new HashMap<>();
     protected final Map<NamedAction, String> lockedActions = new HashMap<>();
     protected final Map<Hotkey, String> lockedHotkeys = new HashMap<>();
+    protected ConfigLockIndex configIndex = new ConfigLockIndex(Collections.emptyMap());
 
     public void readAndApplyLocks()
     {
@@ -150,6 +151,8 @@ public class ConfigLockHandler
                 this.overridableConfigs.put(modConfig.getModInfo(), map);
             }
         }
+
+        this.configIndex = new ConfigLockIndex(this.overridableConfigs);
     }
 
     protected void fetchAllActions()
@@ -355,7 +358,7 @@ public class ConfigLockHandler
         {
             JsonArray overridesArray = root.get(arrayName).getAsJsonArray();
             MaLiLib.debugLog("  > Found {} top level lock definitions", overridesArray.size());
-            TestsAndMessage data = new TestsAndMessage(s -> true, s -> true, s -> true, null);
+            TestsAndMessage data = new TestsAndMessage(StringTest.ALL, StringTest.ALL, StringTest.ALL, null);
             JsonUtils.getArrayElementsAsObjects(overridesArray, o -> this.readLockFromArrayElement(o, data, overrideHandler));
 
             return true;
@@ -380,9 +383,9 @@ public class ConfigLockHandler
 
     protected TestsAndMessage readLocksFrom(JsonObject obj, TestsAndMessage data)
     {
-        Predicate<String> modTest = this.getModTestOrDefault(obj, data.modTest);
-        Predicate<String> categoryTest = this.getCategoryTestOrDefault(obj, data.categoryTest);
-        Predicate<String> nameTest = this.getNameTestOrDefault(obj, data.nameTest);
+        StringTest modTest = this.getModTestOrDefault(obj, data.modTest);
+        StringTest categoryTest = this.getCategoryTestOrDefault(obj, data.categoryTest);
+        StringTest nameTest = this.getNameTestOrDefault(obj, data.nameTest);
         String message = JsonUtils.getStringOrDefault(obj, "message", data.message);
 
         data = new TestsAndMessage(modTest, categoryTest, nameTest, message);
@@ -391,7 +394,6 @@ public class ConfigLockHandler
         Pair<JsonElement, String> overrideData = Pair.of(overrideValue, message);
         String policy = JsonUtils.getStringOrDefault(obj, "policy", "");
         boolean enableOverride = "override".equalsIgnoreCase(policy);
-        int overrideCount = 0;
 
         if (overrideValue == null && enableOverride)
         {
@@ -401,47 +403,18 @@ public class ConfigLockHandler
 
         MaLiLib.debugLog("      > Reading override rule, policy = {}", policy);
 
-        for (ModInfo modInfo : this.overridableConfigs.keySet())
-        {
-            String modId = modInfo.getModId();
+        int overrideCount = this.configIndex.forEachMatch(modTest, categoryTest, nameTest, (category, cfg) -> {
+            Pair<ConfigOptionCategory, BaseGenericConfig<?>> cac = Pair.of(category, cfg);
 
-            if (modTest.test(modId) == false)
+            if (enableOverride)
             {
-                continue;
+                this.configOverrides.put(cac, overrideData);
             }
-
-            for (Map<ConfigOptionCategory, List<BaseGenericConfig<?>>> map : this.overridableConfigs.values())
+            else
             {
-                for (Map.Entry<ConfigOptionCategory, List<BaseGenericConfig<?>>> entry : map.entrySet())
-                {
-                    if (categoryTest.test(entry.getKey().getName()) == false)
-                    {
-                        continue;
-                    }
-
-                    for (BaseGenericConfig<?> cfg : entry.getValue())
-                    {
-                        if (nameTest.test(cfg.getName()) == false)
-                        {
-                            continue;
-                        }
-
-                        Pair<ConfigOptionCategory, BaseGenericConfig<?>> cac = Pair.of(entry.getKey(), cfg);
-
-                        if (enableOverride)
-                        {
-                            this.configOverrides.put(cac, overrideData);
-                        }
-                        else
-                        {
-                            this.configOverrides.remove(cac);
-                        }
-
-                        ++overrideCount;
-                    }
-                }
+                this.configOverrides.remove(cac);
             }
-        }
+        });
 
         if (enableOverride)
         {
@@ -457,11 +430,11 @@ public class ConfigLockHandler
 
     protected TestsAndMessage readActionLocksFrom(JsonObject obj, TestsAndMessage data)
     {
-        Predicate<String> modTest = this.getModTestOrDefault(obj, data.modTest);
-        Predicate<String> nameTest = this.getNameTestOrDefault(obj, data.nameTest);
+        StringTest modTest = this.getModTestOrDefault(obj, data.modTest);
+        StringTest nameTest = this.getNameTestOrDefault(obj, data.nameTest);
         String message = JsonUtils.getStringOrDefault(obj, "message", data.message);
 
-        data = new TestsAndMessage(modTest, null, nameTest, message);
+        data = new TestsAndMessage(modTest, data.categoryTest, nameTest, message);
 
         String policy = JsonUtils.getStringOrDefault(obj, "policy", "");
         boolean shouldDisable = "disable".equalsIgnoreCase(policy);
@@ -512,11 +485,11 @@ public class ConfigLockHandler
 
     protected TestsAndMessage readHotkeyLocksFrom(JsonObject obj, TestsAndMessage data)
     {
-        Predicate<String> modTest = this.getModTestOrDefault(obj, data.modTest);
-        Predicate<String> nameTest = this.getNameTestOrDefault(obj, data.nameTest);
+        StringTest modTest = this.getModTestOrDefault(obj, data.modTest);
+        StringTest nameTest = this.getNameTestOrDefault(obj, data.nameTest);
         String message = JsonUtils.getStringOrDefault(obj, "message", data.message);
 
-        data = new TestsAndMessage(modTest, null, nameTest, message);
+        data = new TestsAndMessage(modTest, data.categoryTest, nameTest, message);
 
         String policy = JsonUtils.getStringOrDefault(obj, "policy", "");
         boolean shouldDisable = "disable".equalsIgnoreCase(policy);
@@ -638,9 +611,9 @@ public class ConfigLockHandler
     }
 
     @Nullable
-    protected Predicate<String> getStringTest(JsonObject obj, String keyName, String errorMsgName)
+    protected StringTest getStringTest(JsonObject obj, String keyName, String errorMsgName)
     {
-        Predicate<String> test = null;
+        StringTest test = null;
 
         if (JsonUtils.hasString(obj, keyName))
         {
@@ -648,13 +621,12 @@ public class ConfigLockHandler
 
             try
             {
-                Pattern pattern = Pattern.compile(str);
-                test = (name) -> pattern.matcher(name).matches();
+                test = StringTest.regex(str);
             }
             catch (Exception e)
             {
                 MaLiLib.LOGGER.error("Failed to compile {} regex '{}'", errorMsgName, str);
-                test = (name) -> false;
+                test = StringTest.NONE;
             }
         }
 
@@ -662,9 +634,9 @@ public class ConfigLockHandler
     }
 
     @Nullable
-    protected Predicate<String> getNameTest(JsonObject obj)
+    protected StringTest getNameTest(JsonObject obj)
     {
-        Predicate<String> test = this.getStringTest(obj, "name_regex", "mod name");
+        StringTest test = this.getStringTest(obj, "name_regex", "mod name");
 
         if (test == null && JsonUtils.hasArray(obj, "names"))
         {
@@ -679,40 +651,40 @@ public class ConfigLockHandler
                 names.add(prefix + arr.get(i).getAsString() + suffix);
             }
 
-            test = names::contains;
+            test = StringTest.exact(names);
         }
 
         return test;
     }
 
-    protected Predicate<String> getModTestOrDefault(JsonObject obj, Predicate<String> defaultFilter)
+    protected StringTest getModTestOrDefault(JsonObject obj, StringTest defaultFilter)
     {
-        Predicate<String> filter = this.getStringTest(obj, "mod", "mod name filter");
+        StringTest filter = this.getStringTest(obj, "mod", "mod name filter");
         return filter != null ? filter : defaultFilter;
     }
 
-    protected Predicate<String> getCategoryTestOrDefault(JsonObject obj, Predicate<String> defaultFilter)
+    protected StringTest getCategoryTestOrDefault(JsonObject obj, StringTest defaultFilter)
     {
-        Predicate<String> filter = this.getStringTest(obj, "category", "category name filter");
+        StringTest filter = this.getStringTest(obj, "category", "category name filter");
         return filter != null ? filter : defaultFilter;
     }
 
-    protected Predicate<String> getNameTestOrDefault(JsonObject obj, Predicate<String> defaultFilter)
+    protected StringTest getNameTestOrDefault(JsonObject obj, StringTest defaultFilter)
     {
-        Predicate<String> filter = this.getNameTest(obj);
+        StringTest filter = this.getNameTest(obj);
         return filter != null ? filter : defaultFilter;
     }
 
     protected static class TestsAndMessage
     {
-        @Nullable public final Predicate<String> modTest;
-        @Nullable public final Predicate<String> categoryTest;
-        @Nullable public final Predicate<String> nameTest;
+        public final StringTest modTest;
+        public final StringTest categoryTest;
+        public final StringTest nameTest;
         @Nullable public final String message;
 
-        public TestsAndMessage(@Nullable Predicate<String> modTest,
-                               @Nullable Predicate<String> categoryTest,
-                               @Nullable Predicate<String> nameTest,
+        public TestsAndMessage(StringTest modTest,
+                               StringTest categoryTest,
+                               StringTest nameTest,
                                @Nullable String message)
         {
             this.modTest = modTest;
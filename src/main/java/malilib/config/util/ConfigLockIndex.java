@@ -0,0 +1,309 @@
+package malilib.config.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import malilib.config.category.ConfigOptionCategory;
+import malilib.config.option.BaseGenericConfig;
+import malilib.util.data.ModInfo;
+
+/**
+ * An index of the overridable configs, used for finding the configs that
+ * match the mod, category and name tests of the config lock rules.
+ * <br><br>
+ * The mod IDs, category names and config names are each stored in a table of
+ * their distinct values. The exact name tests are then simple hash lookups,
+ * and the regex tests are only run once against each distinct value.
+ * The regex results are also cached by the pattern, since the same patterns
+ * usually appear in many rules. So the cost of applying a rule depends on the
+ * number of matching configs, and not on the total number of configs.
+ */
+public class ConfigLockIndex
+{
+    protected final List<IndexEntry> entries = new ArrayList<>();
+    protected final StringTable modIds = new StringTable();
+    protected final StringTable categoryNames = new StringTable();
+    protected final StringTable configNames = new StringTable();
+    protected final List<IntArrayList> entriesByConfigName = new ArrayList<>();
+
+    public ConfigLockIndex(Map<ModInfo, Map<ConfigOptionCategory, List<BaseGenericConfig<?>>>> configs)
+    {
+        for (Map.Entry<ModInfo, Map<ConfigOptionCategory, List<BaseGenericConfig<?>>>> modEntry : configs.entrySet())
+        {
+            int modId = this.modIds.getOrAdd(modEntry.getKey().getModId());
+
+            for (Map.Entry<ConfigOptionCategory, List<BaseGenericConfig<?>>> categoryEntry : modEntry.getValue().entrySet())
+            {
+                ConfigOptionCategory category = categoryEntry.getKey();
+                int categoryId = this.categoryNames.getOrAdd(category.getName());
+
+                for (BaseGenericConfig<?> config : categoryEntry.getValue())
+                {
+                    int nameId = this.configNames.getOrAdd(config.getName());
+
+                    if (nameId >= this.entriesByConfigName.size())
+                    {
+                        this.entriesByConfigName.add(new IntArrayList(1));
+                    }
+
+                    this.entriesByConfigName.get(nameId).add(this.entries.size());
+                    this.entries.add(new IndexEntry(modId, categoryId, category, config));
+                }
+            }
+        }
+    }
+
+    public int getConfigCount()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Passes all the configs that match all three tests to the consumer
+     * @return the number of matching configs
+     */
+    public int forEachMatch(StringTest modTest, StringTest categoryTest, StringTest nameTest,
+                            BiConsumer<ConfigOptionCategory, BaseGenericConfig<?>> consumer)
+    {
+        BitSet mods = this.modIds.getMatches(modTest);
+        BitSet categories = this.categoryNames.getMatches(categoryTest);
+
+        if (mods.isEmpty() || categories.isEmpty())
+        {
+            return 0;
+        }
+
+        Set<String> exactNames = nameTest.getExactValues();
+        int count = 0;
+
+        if (exactNames != null)
+        {
+            for (String name : exactNames)
+            {
+                int nameId = this.configNames.getId(name);
+
+                if (nameId >= 0)
+                {
+                    count += this.acceptEntries(nameId, mods, categories, consumer);
+                }
+            }
+        }
+        else
+        {
+            BitSet names = this.configNames.getMatches(nameTest);
+
+            for (int nameId = names.nextSetBit(0); nameId >= 0; nameId = names.nextSetBit(nameId + 1))
+            {
+                count += this.acceptEntries(nameId, mods, categories, consumer);
+            }
+        }
+
+        return count;
+    }
+
+    protected int acceptEntries(int nameId, BitSet mods, BitSet categories,
+                                BiConsumer<ConfigOptionCategory, BaseGenericConfig<?>> consumer)
+    {
+        IntArrayList list = this.entriesByConfigName.get(nameId);
+        final int size = list.size();
+        int count = 0;
+
+        for (int i = 0; i < size; ++i)
+        {
+            IndexEntry entry = this.entries.get(list.getInt(i));
+
+            if (mods.get(entry.modId) && categories.get(entry.categoryId))
+            {
+                consumer.accept(entry.category, entry.config);
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    protected static class IndexEntry
+    {
+        public final int modId;
+        public final int categoryId;
+        public final ConfigOptionCategory category;
+        public final BaseGenericConfig<?> config;
+
+        public IndexEntry(int modId, int categoryId, ConfigOptionCategory category, BaseGenericConfig<?> config)
+        {
+            this.modId = modId;
+            this.categoryId = categoryId;
+            this.category = category;
+            this.config = config;
+        }
+    }
+
+    /**
+     * A table of distinct strings, with cached test results
+     */
+    protected static class StringTable
+    {
+        protected final List<String> values = new ArrayList<>();
+        protected final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+        protected final Map<String, BitSet> patternMatchCache = new HashMap<>();
+
+        public StringTable()
+        {
+            this.ids.defaultReturnValue(-1);
+        }
+
+        public int getOrAdd(String value)
+        {
+            int id = this.ids.getInt(value);
+
+            if (id < 0)
+            {
+                id = this.values.size();
+                this.values.add(value);
+                this.ids.put(value, id);
+            }
+
+            return id;
+        }
+
+        public int getId(String value)
+        {
+            return this.ids.getInt(value);
+        }
+
+        /**
+         * @return the set of the IDs of the values that match the test.
+         *         The returned set must not be modified.
+         */
+        public BitSet getMatches(StringTest test)
+        {
+            Set<String> exactValues = test.getExactValues();
+
+            if (exactValues != null)
+            {
+                BitSet set = new BitSet(this.values.size());
+
+                for (String value : exactValues)
+                {
+                    int id = this.getId(value);
+
+                    if (id >= 0)
+                    {
+                        set.set(id);
+                    }
+                }
+
+                return set;
+            }
+
+            return this.patternMatchCache.computeIfAbsent(test.getCacheKey(), (k) -> {
+                BitSet set = new BitSet(this.values.size());
+                final int size = this.values.size();
+
+                for (int id = 0; id < size; ++id)
+                {
+                    if (test.test(this.values.get(id)))
+                    {
+                        set.set(id);
+                    }
+                }
+
+                return set;
+            });
+        }
+    }
+
+    /**
+     * A string test of a lock rule. This is either a set of exact values,
+     * a regular expression, or a test that matches everything or nothing.
+     */
+    public static class StringTest implements Predicate<String>
+    {
+        public static final StringTest ALL = new StringTest(null, null, "*all*");
+        public static final StringTest NONE = new StringTest(null, Collections.emptySet(), "*none*");
+
+        @Nullable protected final Pattern pattern;
+        @Nullable protected final Set<String> exactValues;
+        protected final String cacheKey;
+
+        protected StringTest(@Nullable Pattern pattern, @Nullable Set<String> exactValues, String cacheKey)
+        {
+            this.pattern = pattern;
+            this.exactValues = exactValues;
+            this.cacheKey = cacheKey;
+        }
+
+        /**
+         * @return the set of exact values that this test matches,
+         *         or null if this is a regex test or matches everything
+         */
+        @Nullable
+        public Set<String> getExactValues()
+        {
+            return this.exactValues;
+        }
+
+        protected String getCacheKey()
+        {
+            return this.cacheKey;
+        }
+
+        @Override
+        public boolean test(String str)
+        {
+            if (this.exactValues != null)
+            {
+                return this.exactValues.contains(str);
+            }
+
+            return this.pattern == null || this.pattern.matcher(str).matches();
+        }
+
+        public static StringTest exact(Set<String> values)
+        {
+            return new StringTest(null, values, "");
+        }
+
+        /**
+         * Creates a regex test. If the regex doesn't contain any special characters,
+         * then it becomes an exact value test instead, which can use hash lookups.
+         * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+         */
+        public static StringTest regex(String regex)
+        {
+            if (isLiteral(regex))
+            {
+                return exact(Collections.singleton(regex));
+            }
+
+            // The "=" prefix keeps the regex cache keys separate from the ALL and NONE keys
+            return new StringTest(Pattern.compile(regex), null, "=" + regex);
+        }
+
+        protected static boolean isLiteral(String regex)
+        {
+            final int length = regex.length();
+
+            for (int i = 0; i < length; ++i)
+            {
+                if ("\\^$.|?*+()[]{}".indexOf(regex.charAt(i)) >= 0)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -1,20 +1,40 @@
 package malilib.config.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 
 import malilib.MaLiLib;
 import malilib.config.category.ConfigOptionCategory;
+import malilib.config.category.ConfigOptionNameIndex;
 import malilib.config.option.ConfigInfo;
 import malilib.config.option.ConfigOption;
 import malilib.config.serialization.JsonConfigSerializerRegistry.ConfigFromJsonLoader;
 import malilib.config.serialization.JsonConfigSerializerRegistry.ConfigToJsonSerializer;
+import malilib.config.value.FileWriteType;
 import malilib.overlay.message.MessageDispatcher;
 import malilib.registry.Registry;
+import malilib.util.FileUtils;
+import malilib.util.data.SimpleBooleanStorage;
 import malilib.util.data.json.JsonUtils;
 
 public class JsonConfigUtils
@@ -22,8 +42,16 @@ public class JsonConfigUtils
     public static void loadFromFile(Path configFile, List<ConfigOptionCategory> categories,
                                     BiConsumer<Integer, JsonObject> configVersionUpdater)
     {
-        JsonElement element = JsonUtils.parseJsonFile(configFile);
+        loadFromJson(JsonUtils.parseJsonFile(configFile), categories, configVersionUpdater);
+    }
 
+    /**
+     * Applies the already parsed config data to the configs in the given categories.
+     * If the data is missing or invalid, then all the configs are reset to their default values.
+     */
+    public static void loadFromJson(@Nullable JsonElement element, List<ConfigOptionCategory> categories,
+                                    BiConsumer<Integer, JsonObject> configVersionUpdater)
+    {
         if (element != null && element.isJsonObject())
         {
             JsonObject root = element.getAsJsonObject();
@@ -41,6 +69,235 @@ public class JsonConfigUtils
         }
     }
 
+    /**
+     * Reads the configs from the given file using a streaming JsonReader, without first
+     * parsing the whole file into a JsonObject tree. Each config value is passed directly
+     * to the matching config option via the name index of its category, and the values
+     * that don't belong to any config are skipped without parsing them.
+     * The end result is the same as with {@link #loadFromFile(Path, List, BiConsumer)},
+     * except that this can't provide the full root object for a config data updater.
+     * @param configVersionConsumer receives the config version read from the file, if the file was read successfully
+     */
+    public static void loadFromFileStreaming(Path configFile, List<ConfigOptionCategory> categories,
+                                             IntConsumer configVersionConsumer)
+    {
+        if (Files.isRegularFile(configFile) == false || Files.isReadable(configFile) == false)
+        {
+            categories.forEach(ConfigOptionCategory::resetAllOptionsToDefaults);
+            return;
+        }
+
+        Map<String, List<ConfigOptionCategory>> categoriesByName = getCategoriesByName(categories, false);
+        Set<ConfigOptionCategory> readCategories = new ReferenceOpenHashSet<>();
+        JsonParser parser = new JsonParser();
+        int configVersion = 0;
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(configFile, StandardCharsets.UTF_8)))
+        {
+            reader.setLenient(true);
+            reader.beginObject();
+
+            while (reader.hasNext())
+            {
+                String key = reader.nextName();
+                List<ConfigOptionCategory> list = categoriesByName.get(key);
+
+                if (key.equals("config_version"))
+                {
+                    configVersion = getIntegerOrDefault(parser.parse(reader), 0);
+                }
+                else if (list != null && reader.peek() == JsonToken.BEGIN_OBJECT)
+                {
+                    readConfigsStreaming(reader, parser, key, list);
+                    readCategories.addAll(list);
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.error("Failed to parse the JSON file '{}'", configFile.toAbsolutePath(), e);
+            categories.forEach(ConfigOptionCategory::resetAllOptionsToDefaults);
+            return;
+        }
+
+        for (ConfigOptionCategory category : categories)
+        {
+            if (readCategories.contains(category) == false)
+            {
+                category.resetAllOptionsToDefaults();
+            }
+        }
+
+        configVersionConsumer.accept(configVersion);
+    }
+
+    /**
+     * Reads the config values from the category object that the reader is currently at.
+     * The configs of the given categories that were not present in the data are reset to their defaults.
+     */
+    public static void readConfigsStreaming(JsonReader reader, JsonParser parser, String categoryName,
+                                            List<ConfigOptionCategory> categories) throws IOException
+    {
+        Set<ConfigOption<?>> loadedConfigs = new ReferenceOpenHashSet<>();
+        // The values by their names, for the names that are old names of some configs
+        Map<String, JsonElement> oldNameValues = null;
+        // The name index is not necessarily cached by the category, so only get it once
+        List<ConfigOptionNameIndex> nameIndices = new ArrayList<>(categories.size());
+
+        for (ConfigOptionCategory category : categories)
+        {
+            nameIndices.add(category.getConfigOptionNameIndex());
+        }
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            JsonElement value = null;
+
+            for (ConfigOptionNameIndex nameIndex : nameIndices)
+            {
+                ConfigOption<?> config = nameIndex.getConfigByName(name);
+
+                if (config != null)
+                {
+                    if (value == null)
+                    {
+                        value = parser.parse(reader);
+                    }
+
+                    loadConfigValue(config, value, categoryName);
+                    loadedConfigs.add(config);
+                }
+            }
+
+            // A name can be both the current name of one config and an old name of another,
+            // so the value is also stored for the old name lookups
+            for (ConfigOptionNameIndex nameIndex : nameIndices)
+            {
+                if (nameIndex.isOldName(name))
+                {
+                    if (value == null)
+                    {
+                        value = parser.parse(reader);
+                    }
+
+                    if (oldNameValues == null)
+                    {
+                        oldNameValues = new HashMap<>();
+                    }
+
+                    // The last value wins for duplicate names, like in a JsonObject
+                    oldNameValues.put(name, value);
+                    break;
+                }
+            }
+
+            if (value == null)
+            {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        for (ConfigOptionCategory category : categories)
+        {
+            for (ConfigOption<?> config : category.getConfigOptions())
+            {
+                if (loadedConfigs.contains(config))
+                {
+                    continue;
+                }
+
+                // The old name values are only used if the current name is not present in the data,
+                // and the first old name in the getOldNames() order that is present is used
+                JsonElement oldNameValue = oldNameValues != null ? getOldNameValue(config, oldNameValues) : null;
+
+                if (oldNameValue != null)
+                {
+                    loadConfigValue(config, oldNameValue, categoryName);
+                }
+                else
+                {
+                    resetConfigNotLoaded(config);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    protected static JsonElement getOldNameValue(ConfigOption<?> config, Map<String, JsonElement> oldNameValues)
+    {
+        for (String oldName : config.getOldNames())
+        {
+            JsonElement value = oldNameValues.get(oldName);
+
+            if (value != null)
+            {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    public static <T, C extends ConfigOption<T>> void loadConfigValue(C config, JsonElement value, String categoryName)
+    {
+        ConfigFromJsonLoader<C> valueLoader = Registry.JSON_CONFIG_SERIALIZER.getConfigValueLoader(config);
+
+        if (valueLoader != null)
+        {
+            valueLoader.loadConfigValue(config, value);
+        }
+        else
+        {
+            MaLiLib.LOGGER.warn("Failed to get a config de-serializer for '{}'.'{}'", categoryName, config.getName());
+            resetConfigNotLoaded(config);
+        }
+    }
+
+    protected static int getIntegerOrDefault(JsonElement element, int defaultValue)
+    {
+        if (element.isJsonPrimitive())
+        {
+            try
+            {
+                return element.getAsInt();
+            }
+            catch (Exception ignore) {}
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Groups the categories by their names, keeping the order of the first occurrence of each name.
+     * Categories with the same name share the same object in the config file.
+     */
+    protected static Map<String, List<ConfigOptionCategory>> getCategoriesByName(List<ConfigOptionCategory> categories,
+                                                                               boolean savedOnly)
+    {
+        Map<String, List<ConfigOptionCategory>> map = new LinkedHashMap<>();
+
+        for (ConfigOptionCategory category : categories)
+        {
+            if (savedOnly == false || category.shouldSaveToFile())
+            {
+                map.computeIfAbsent(category.getName(), (k) -> new ArrayList<>(1)).add(category);
+            }
+        }
+
+        return map;
+    }
+
     public static void readConfigs(JsonObject root, ConfigOptionCategory category)
     {
         String categoryName = category.getName();
@@ -91,7 +348,7 @@ public class JsonConfigUtils
                 {
                     if (obj.has(oldName))
                     {
-                        valueLoader.loadConfigValue(config, obj.get(name));
+                        valueLoader.loadConfigValue(config, obj.get(oldName));
                         return;
                     }
                 }
@@ -102,7 +359,14 @@ public class JsonConfigUtils
             MaLiLib.LOGGER.warn("Failed to get a config de-serializer for '{}'.'{}'", categoryName, config.getName());
         }
 
-        // Reset the config to default if it wasn't successfully read from the config file
+        resetConfigNotLoaded(config);
+    }
+
+    /**
+     * Resets the config to default, if it wasn't successfully read from the config file
+     */
+    public static <T> void resetConfigNotLoaded(ConfigOption<T> config)
+    {
         config.resetToDefault();
 
         // This needs to be called in case the config did not exist in the file yet, and thus the value load
@@ -114,6 +378,19 @@ public class JsonConfigUtils
     public static boolean saveToFile(Path configFile, List<ConfigOptionCategory> categories, int configVersion)
     {
         JsonObject root = new JsonObject();
+        boolean success = writeAllConfigs(root, categories, configVersion);
+        return JsonUtils.writeJsonToFile(root, configFile) && success;
+    }
+
+    /**
+     * Writes all the configs from the given categories, and the config version, into the given JsonObject.
+     * This also marks the config values as saved, so this needs to be called on the client thread.
+     * If some of the configs fail to be written, then an error message is shown,
+     * but the rest of the configs are still written.
+     * @return true if all the configs were written successfully
+     */
+    public static boolean writeAllConfigs(JsonObject root, List<ConfigOptionCategory> categories, int configVersion)
+    {
         root.add("config_version", new JsonPrimitive(configVersion));
         boolean success = true;
 
@@ -130,7 +407,99 @@ public class JsonConfigUtils
             MessageDispatcher.error().console().translate("malilib.message.error.failed_to_save_all_configs");
         }
 
-        return JsonUtils.writeJsonToFile(root, configFile) && success;
+        return success;
+    }
+
+    /**
+     * Writes the configs directly to the file using a streaming JsonWriter,
+     * without first building the whole JsonObject tree. The output is the same
+     * as from {@link #saveToFile(Path, List, int)}. This also marks the config values
+     * as saved, so this needs to be called on the client thread.
+     */
+    public static boolean saveToFileStreaming(Path configFile, List<ConfigOptionCategory> categories,
+                                              int configVersion, FileWriteType writeType)
+    {
+        Map<String, List<ConfigOptionCategory>> categoriesByName = getCategoriesByName(categories, true);
+        SimpleBooleanStorage allConfigsWritten = new SimpleBooleanStorage(true);
+
+        boolean success = FileUtils.writeDataToFile(configFile, (w) -> {
+            try
+            {
+                JsonWriter writer = JsonUtils.GSON.newJsonWriter(w);
+                writer.beginObject();
+                writer.name("config_version").value(configVersion);
+
+                for (Map.Entry<String, List<ConfigOptionCategory>> entry : categoriesByName.entrySet())
+                {
+                    writer.name(entry.getKey());
+
+                    if (writeConfigsStreaming(writer, entry.getKey(), entry.getValue()) == false)
+                    {
+                        allConfigsWritten.setBooleanValue(false);
+                    }
+                }
+
+                writer.endObject();
+                writer.flush();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }, writeType);
+
+        if (allConfigsWritten.getBooleanValue() == false)
+        {
+            MessageDispatcher.error().console().translate("malilib.message.error.failed_to_save_all_configs");
+        }
+
+        return success && allConfigsWritten.getBooleanValue();
+    }
+
+    /**
+     * Writes the configs of the given categories as one object.
+     * If several configs have the same name, then the value of the last one is written,
+     * at the position of the first one, the same as when adding them to a JsonObject.
+     * @return true if all the configs had a serializer
+     */
+    public static boolean writeConfigsStreaming(JsonWriter writer, String categoryName,
+                                                List<ConfigOptionCategory> categories) throws IOException
+    {
+        Map<String, JsonElement> values = new LinkedHashMap<>();
+        boolean success = true;
+
+        for (ConfigOptionCategory category : categories)
+        {
+            for (ConfigOption<?> config : category.getConfigOptions())
+            {
+                ConfigToJsonSerializer<ConfigOption<?>> serializer = Registry.JSON_CONFIG_SERIALIZER.getSerializer(config);
+                String name = config.getName();
+
+                if (serializer == null)
+                {
+                    MaLiLib.LOGGER.warn("Failed to get a config serializer for '{}'.'{}'", categoryName, name);
+                    success = false;
+                }
+                else
+                {
+                    values.put(name, serializer.configValueToJson(config));
+                }
+
+                config.cacheSavedValue();
+            }
+        }
+
+        writer.beginObject();
+
+        for (Map.Entry<String, JsonElement> entry : values.entrySet())
+        {
+            writer.name(entry.getKey());
+            JsonUtils.GSON.toJson(entry.getValue(), writer);
+        }
+
+        writer.endObject();
+
+        return success;
     }
 
     public static boolean writeConfigs(JsonObject root, ConfigOptionCategory category)
@@ -9,6 +9,7 @@ import javax.annotation.Nullable;
 import com.google.common.collect.ImmutableList;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 
 import malilib.MaLiLib;
 
@@ -17,7 +18,11 @@ public class HotkeyManagerImpl implements HotkeyManager
     protected final List<HotkeyCategory> keyBindCategories = new ArrayList<>();
     protected final List<HotkeyProvider> keyBindProviders = new ArrayList<>();
     protected final Map<Hotkey, String> lockedHotkeys = new HashMap<>();
+    protected final ReferenceOpenHashSet<KeyBind> heldKeyBinds = new ReferenceOpenHashSet<>();
     protected Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap = new Int2ObjectOpenHashMap<>();
+    protected KeyBindMatcher keyBindMatcher = new KeyBindMatcher(new ArrayList<>());
+    /** Re-used for each key event. This is null while in use, in case of a re-entrant key event from a callback. */
+    @Nullable protected ArrayList<KeyBind> keyBindsToUpdate = new ArrayList<>();
     @Nullable protected ImmutableList<HotkeyCategory> immutableKeyBindCategories;
 
     @Override
@@ -57,17 +62,28 @@ public class HotkeyManagerImpl implements HotkeyManager
         // Create a new map to avoid a CME in checkKeyBindsForChanges(),
         // if the update is triggered from a keybind callback
         Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap = new Int2ObjectOpenHashMap<>();
+        List<KeyBind> allKeyBinds = new ArrayList<>();
 
         for (HotkeyProvider handler : this.keyBindProviders)
         {
             for (Hotkey hotkey : handler.getAllHotkeys())
             {
-                this.addHotkeyToMap(hotkey, hotkeyMap);
+                this.addHotkeyToMap(hotkey, hotkeyMap, allKeyBinds);
             }
         }
 
-        hotkeyMap.values().forEach((list) -> list.sort(Comparator.comparingInt((v) -> v.getSettings().getPriority())));
+        Comparator<KeyBind> comparator = Comparator.comparingInt((v) -> v.getSettings().getPriority());
+        hotkeyMap.values().forEach((list) -> list.sort(comparator));
+        allKeyBinds.sort(comparator);
+
         this.hotkeyMap = hotkeyMap;
+        this.keyBindMatcher = new KeyBindMatcher(allKeyBinds);
+
+        // Locked or removed keybinds must not get any more updates, even if they were held
+        if (this.heldKeyBinds.isEmpty() == false)
+        {
+            this.heldKeyBinds.retainAll(new ReferenceOpenHashSet<>(allKeyBinds));
+        }
     }
 
     public void clearHotkeyLocks()
@@ -83,7 +99,9 @@ public class HotkeyManagerImpl implements HotkeyManager
         this.updateUsedKeys();
     }
 
-    protected void addHotkeyToMap(Hotkey hotkey, Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap)
+    protected void addHotkeyToMap(Hotkey hotkey,
+                                  Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap,
+                                  List<KeyBind> allKeyBinds)
     {
         if (this.lockedHotkeys.containsKey(hotkey))
         {
@@ -110,6 +128,11 @@ public class HotkeyManagerImpl implements HotkeyManager
             int key = keys.getInt(i);
             hotkeyMap.computeIfAbsent(key, (k) -> new ArrayList<>()).add(keybind);
         }
+
+        if (size > 0)
+        {
+            allKeyBinds.add(keybind);
+        }
     }
 
     protected void addKeyBindCategory(HotkeyCategory category)
@@ -129,22 +152,42 @@ public class HotkeyManagerImpl implements HotkeyManager
         boolean isFirst = true;
         List<KeyBind> keyBinds = this.hotkeyMap.get(eventKey);
 
-        if (keyBinds != null && keyBinds.isEmpty() == false)
+        if (keyBinds == null || keyBinds.isEmpty())
         {
-            for (KeyBind keyBind : keyBinds)
-            {
-                // Note: updateIsPressed() has to be called for key releases too, to reset the state
-                KeyUpdateResult result = keyBind.updateIsPressed(isFirst);
+            return false;
+        }
 
-                if (result.triggered)
-                {
-                    isFirst = false;
-                }
+        // Only the keybinds that have all their keys pressed, or which were held
+        // before this event, can change their state, so the rest are not updated at all
+        ArrayList<KeyBind> keyBindsToUpdate = this.keyBindsToUpdate != null ? this.keyBindsToUpdate : new ArrayList<>();
+        this.keyBindsToUpdate = null;
+        this.keyBindMatcher.getKeyBindsToUpdate(eventKey, KeyBindImpl.getPressedKeys(), this.heldKeyBinds, keyBindsToUpdate);
 
-                cancel |= result.cancel;
+        for (KeyBind keyBind : keyBindsToUpdate)
+        {
+            // Note: updateIsPressed() has to be called for key releases too, to reset the state
+            KeyUpdateResult result = keyBind.updateIsPressed(isFirst);
+
+            if (keyBind.isPhysicallyHeld())
+            {
+                this.heldKeyBinds.add(keyBind);
             }
+            else
+            {
+                this.heldKeyBinds.remove(keyBind);
+            }
+
+            if (result.triggered)
+            {
+                isFirst = false;
+            }
+
+            cancel |= result.cancel;
         }
 
+        keyBindsToUpdate.clear();
+        this.keyBindsToUpdate = keyBindsToUpdate;
+
         return cancel;
     }
 }
@@ -622,6 +622,15 @@ public class KeyBindImpl implements KeyBind
         }
     }
 
+    /**
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE!!!
+     * @return the live list of the currently pressed keys, this must not be modified
+     */
+    static IntArrayList getPressedKeys()
+    {
+        return PRESSED_KEYS;
+    }
+
     public static int getCurrentlyPressedKeysCount()
     {
         return PRESSED_KEYS.size();
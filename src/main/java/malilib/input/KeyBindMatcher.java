@@ -0,0 +1,151 @@
+package malilib.input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+/**
+ * A lookup structure for finding the keybinds whose keys are all currently held down.
+ * The keybinds are stored in a trie, where the path to each keybind
+ * is its sorted set of key codes. Finding the satisfied keybinds then
+ * only needs to walk the branches made up of the currently pressed keys,
+ * so the cost depends on the number of pressed keys and not on the number of keybinds.
+ * <br><br>
+ * This is only used to narrow down the keybinds that need to be updated
+ * for a key event. The final pressed state is still determined by {@link KeyBind#updateIsPressed(boolean)},
+ * which also takes into account the key order and extra keys settings.
+ * <br><br>
+ * The matcher is immutable after being built, except for the internal temporary collections
+ * that are re-used between the lookups, so it must only be used from the client thread.
+ */
+public class KeyBindMatcher
+{
+    protected final Node root = new Node();
+    protected final Reference2IntOpenHashMap<KeyBind> priorityOrder = new Reference2IntOpenHashMap<>();
+    protected final Comparator<KeyBind> priorityComparator = Comparator.comparingInt(this.priorityOrder::getInt);
+    protected final ReferenceOpenHashSet<KeyBind> collectedKeyBinds = new ReferenceOpenHashSet<>();
+    protected int[] sortedPressedKeys = new int[8];
+
+    /**
+     * @param keyBindsInPriorityOrder all the keybinds, in the order in which they should be updated
+     */
+    public KeyBindMatcher(List<KeyBind> keyBindsInPriorityOrder)
+    {
+        IntArrayList keys = new IntArrayList();
+        int index = 0;
+
+        for (KeyBind keyBind : keyBindsInPriorityOrder)
+        {
+            keys.clear();
+            keyBind.getKeysToList(keys);
+
+            if (keys.isEmpty())
+            {
+                continue;
+            }
+
+            int[] sortedKeys = keys.toIntArray();
+            Arrays.sort(sortedKeys);
+            Node node = this.root;
+            int lastKey = 0;
+
+            for (int i = 0; i < sortedKeys.length; ++i)
+            {
+                int key = sortedKeys[i];
+
+                // Skip duplicate keys
+                if (i > 0 && key == lastKey)
+                {
+                    continue;
+                }
+
+                node = node.children.computeIfAbsent(key, (k) -> new Node());
+                lastKey = key;
+            }
+
+            node.keyBinds.add(keyBind);
+            this.priorityOrder.putIfAbsent(keyBind, index++);
+        }
+    }
+
+    /**
+     * Collects the keybinds that contain the given key, and which need to be updated
+     * for an event of that key. These are the keybinds whose keys are all currently
+     * pressed, and the given previously held keybinds that contain the key,
+     * as those need to be updated to get released.
+     * The keybinds are added to the output list in their priority order.
+     * @param eventKey the key of the key event
+     * @param pressedKeys the currently pressed keys
+     * @param heldKeyBinds the keybinds that were held after their last update
+     * @param outputList the list to add the keybinds to
+     */
+    public void getKeyBindsToUpdate(int eventKey, IntArrayList pressedKeys,
+                                    Iterable<KeyBind> heldKeyBinds, List<KeyBind> outputList)
+    {
+        final int pressedCount = pressedKeys.size();
+        ReferenceOpenHashSet<KeyBind> collected = this.collectedKeyBinds;
+
+        if (this.sortedPressedKeys.length < pressedCount)
+        {
+            this.sortedPressedKeys = new int[pressedCount];
+        }
+
+        pressedKeys.getElements(0, this.sortedPressedKeys, 0, pressedCount);
+        Arrays.sort(this.sortedPressedKeys, 0, pressedCount);
+
+        this.collectSatisfiedKeyBinds(this.root, eventKey, false, 0, pressedCount, collected);
+
+        for (KeyBind keyBind : heldKeyBinds)
+        {
+            if (keyBind.containsKey(eventKey))
+            {
+                collected.add(keyBind);
+            }
+        }
+
+        if (collected.isEmpty() == false)
+        {
+            int start = outputList.size();
+            outputList.addAll(collected);
+            outputList.subList(start, outputList.size()).sort(this.priorityComparator);
+            collected.clear();
+        }
+    }
+
+    protected void collectSatisfiedKeyBinds(Node node, int eventKey, boolean containsEventKey,
+                                            int startIndex, int pressedCount, ReferenceOpenHashSet<KeyBind> collected)
+    {
+        if (containsEventKey)
+        {
+            collected.addAll(node.keyBinds);
+        }
+
+        if (node.children.isEmpty())
+        {
+            return;
+        }
+
+        for (int i = startIndex; i < pressedCount; ++i)
+        {
+            int key = this.sortedPressedKeys[i];
+            Node child = node.children.get(key);
+
+            if (child != null)
+            {
+                this.collectSatisfiedKeyBinds(child, eventKey, containsEventKey || key == eventKey,
+                                              i + 1, pressedCount, collected);
+            }
+        }
+    }
+
+    protected static class Node
+    {
+        protected final Int2ObjectOpenHashMap<Node> children = new Int2ObjectOpenHashMap<>();
+        protected final List<KeyBind> keyBinds = new ArrayList<>(1);
+    }
+}
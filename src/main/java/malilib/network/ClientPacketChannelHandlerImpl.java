@@ -99,8 +99,15 @@ public class ClientPacketChannelHandlerImpl implements ClientPacketChannelHandle
                 // Finished the complete packet
                 if (buf != null)
                 {
-                    handler.onPacketReceived(buf);
-                    buf.release();
+                    // The buffer may be pooled, so it must be released even if the handler throws
+                    try
+                    {
+                        handler.onPacketReceived(buf);
+                    }
+                    finally
+                    {
+                        buf.release();
+                    }
                 }
             }
 
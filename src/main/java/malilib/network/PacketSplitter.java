@@ -1,14 +1,20 @@
 package malilib.network;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import org.apache.commons.lang3.tuple.Pair;
 
 import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.network.INetHandler;
+import net.minecraft.network.NetworkManager;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.client.CPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketCustomPayload;
@@ -16,6 +22,14 @@ import net.minecraft.util.ResourceLocation;
 
 /**
  * Network packet splitter code from QuickCarpet by skyrising
+ * <br><br>
+ * The first packet of a split payload starts with the VarInt total size of the payload.
+ * Optionally the payload can be deflate compressed, in which case the first packet
+ * starts with the VarInt {@link #COMPRESSED_PAYLOAD_MARKER}, followed by the VarInt
+ * uncompressed size, followed by the compressed data. The receiving side
+ * always accepts both formats, but the compression should only be enabled
+ * for the sending side once it's known that the other end supports it,
+ * see {@link PluginChannelHandler#getPacketCompressionLevel()}.
  * @author skyrising
  */
 public class PacketSplitter
@@ -26,20 +40,59 @@ public class PacketSplitter
     public static final int MAX_PAYLOAD_PER_PACKET_C2S = MAX_TOTAL_PER_PACKET_C2S - 5;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_C2S = 1048576;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_S2C = 67108864;
+    /** The total size value of the first packet, which indicates a compressed payload */
+    public static final int COMPRESSED_PAYLOAD_MARKER = -1;
+    public static final int NO_COMPRESSION = -1;
 
-    private static final Map<Pair<INetHandler, ResourceLocation>, ReadingSession> READING_SESSIONS = new HashMap<>();
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
 
     public static void send(ResourceLocation channel,
                             PacketBuffer packet,
                             NetHandlerPlayClient networkHandler)
     {
-        send(packet, MAX_PAYLOAD_PER_PACKET_C2S,
-             buf -> networkHandler.sendPacket(new CPacketCustomPayload(channel.toString(), buf)));
+        send(channel, packet, networkHandler, NO_COMPRESSION);
     }
 
-    private static void send(PacketBuffer packet,
-                             int payloadLimit,
-                             Consumer<PacketBuffer> sender)
+    /**
+     * Sends the packet using the compression level of the given channel handler
+     */
+    public static void send(PluginChannelHandler handler,
+                            ResourceLocation channel,
+                            PacketBuffer packet,
+                            NetHandlerPlayClient networkHandler)
+    {
+        send(channel, packet, networkHandler, handler.getPacketCompressionLevel());
+    }
+
+    /**
+     * @param compressionLevel the deflate compression level (0 - 9), or {@link #NO_COMPRESSION}.
+     *                         Only use compression if the receiving end is known to support it.
+     */
+    public static void send(ResourceLocation channel,
+                            PacketBuffer packet,
+                            NetHandlerPlayClient networkHandler,
+                            int compressionLevel)
+    {
+        NetworkManager networkManager = networkHandler.getNetworkManager();
+        String channelName = channel.toString();
+
+        // The chunk buffers are unpooled heap buffers, as the vanilla packets are never released,
+        // and the packets may also get dropped if the connection closes while they are queued
+        Consumer<PacketBuffer> sender = buf -> networkManager.sendPacket(new CPacketCustomPayload(channelName, buf));
+
+        if (compressionLevel == NO_COMPRESSION)
+        {
+            send(packet, MAX_PAYLOAD_PER_PACKET_C2S, sender);
+        }
+        else
+        {
+            sendCompressed(packet, MAX_TOTAL_PER_PACKET_C2S, compressionLevel, sender);
+        }
+    }
+
+    static void send(PacketBuffer packet,
+                     int payloadLimit,
+                     Consumer<PacketBuffer> sender)
     {
         int totalSize = packet.writerIndex();
 
@@ -48,9 +101,9 @@ public class PacketSplitter
         for (int offset = 0; offset < totalSize; offset += payloadLimit)
         {
             int packetSize = Math.min(totalSize - offset, payloadLimit);
-            PacketBuffer buf = new PacketBuffer(Unpooled.buffer(packetSize));
-
-            buf.resetWriterIndex();
+            // Reserve space for the total size VarInt in the first packet
+            int bufferSize = offset == 0 ? packetSize + 5 : packetSize;
+            PacketBuffer buf = new PacketBuffer(Unpooled.buffer(bufferSize, bufferSize));
 
             if (offset == 0)
             {
@@ -65,6 +118,78 @@ public class PacketSplitter
         packet.release();
     }
 
+    /**
+     * Compresses the packet in a streaming fashion directly into the outgoing packet buffers.
+     * Each packet is sent as soon as it has been filled, so the whole compressed
+     * payload is never held in memory at once.
+     */
+    static void sendCompressed(PacketBuffer packet,
+                               int packetSizeLimit,
+                               int compressionLevel,
+                               Consumer<PacketBuffer> sender)
+    {
+        Deflater deflater = new Deflater(compressionLevel);
+
+        try
+        {
+            int totalSize = packet.writerIndex();
+            PacketBuffer buf = new PacketBuffer(Unpooled.buffer(packetSizeLimit, packetSizeLimit));
+
+            buf.writeVarInt(COMPRESSED_PAYLOAD_MARKER);
+            buf.writeVarInt(totalSize);
+
+            packet.resetReaderIndex();
+
+            if (packet.hasArray())
+            {
+                deflater.setInput(packet.array(), packet.arrayOffset(), totalSize);
+                deflater.finish();
+            }
+
+            byte[] inputBuffer = packet.hasArray() ? null : new byte[Math.min(totalSize, 65536)];
+            int inputOffset = 0;
+
+            while (deflater.finished() == false)
+            {
+                if (inputBuffer != null && deflater.needsInput())
+                {
+                    if (inputOffset < totalSize)
+                    {
+                        int length = Math.min(totalSize - inputOffset, inputBuffer.length);
+                        packet.getBytes(inputOffset, inputBuffer, 0, length);
+                        deflater.setInput(inputBuffer, 0, length);
+                        inputOffset += length;
+                    }
+
+                    if (inputOffset >= totalSize)
+                    {
+                        deflater.finish();
+                    }
+                }
+
+                int writerIndex = buf.writerIndex();
+                int length = deflater.deflate(buf.array(), buf.arrayOffset() + writerIndex, buf.writableBytes());
+                buf.writerIndex(writerIndex + length);
+
+                if (buf.isWritable() == false)
+                {
+                    sender.accept(buf);
+                    buf = new PacketBuffer(Unpooled.buffer(packetSizeLimit, packetSizeLimit));
+                }
+            }
+
+            if (buf.isReadable())
+            {
+                sender.accept(buf);
+            }
+        }
+        finally
+        {
+            deflater.end();
+            packet.release();
+        }
+    }
+
     @Nullable
     public static PacketBuffer receive(NetHandlerPlayClient networkHandler,
                                        SPacketCustomPayload message)
@@ -80,45 +205,383 @@ public class PacketSplitter
         Pair<INetHandler, ResourceLocation> key = Pair.of(networkHandler,
                                                           new ResourceLocation(message.getChannelName()));
 
-        return READING_SESSIONS.computeIfAbsent(key, ReadingSession::new)
-                .receive(PacketUtils.slice(message.getBufferData()), maxLength);
+        return SplitPacketSessionManager.INSTANCE.receive(key, PacketUtils.slice(message.getBufferData()), maxLength);
     }
 
-    private static class ReadingSession
+    /**
+     * Reassembles the split packet without copying the data. The received fragments
+     * are retained and added as slices to a composite buffer, instead of copying
+     * them to one large buffer. The fragments get released when the returned
+     * buffer gets released after the packet has been handled.
+     * Compressed payloads are instead inflated as the fragments arrive.
+     * <br><br>
+     * The payload header is read by {@link #readHeader(PacketBuffer, int)} before anything
+     * is allocated for the payload, so that the declared size can be checked against
+     * the memory budget first.
+     * <br><br>
+     * A session that gets discarded before the full payload has been received can be switched
+     * to discard the rest of the payload's fragments (see {@link #discardRemaining()}),
+     * so that they won't be read as the start of a new payload.
+     * <br><br>
+     * The sessions are owned and tracked by the {@link SplitPacketSessionManager}.
+     */
+    static class ReadingSession
     {
-        private final Pair<INetHandler, ResourceLocation> key;
         private int expectedSize = -1;
-        private PacketBuffer received;
+        private boolean compressed;
+        private boolean dataStarted;
+        @Nullable private CompositeByteBuf received;
+        @Nullable private Inflater inflater;
+        @Nullable private ByteBuf inflated;
+        @Nullable private byte[] discardBuffer;
+        private long remainingDiscardBytes;
+        private boolean discarding;
+        private boolean discardFinished;
+        // These are managed by the SplitPacketSessionManager
+        long lastActivityTime;
+        long reservedBytes;
+
+        boolean hasStarted()
+        {
+            return this.expectedSize >= 0;
+        }
+
+        int getExpectedSize()
+        {
+            return this.expectedSize;
+        }
+
+        boolean isDiscarding()
+        {
+            return this.discarding;
+        }
+
+        /**
+         * @return true if the session is discarding the payload, and the end of the payload has been reached
+         */
+        boolean isDiscardFinished()
+        {
+            return this.discardFinished;
+        }
+
+        int getReceivedBytes()
+        {
+            if (this.inflated != null)
+            {
+                return this.inflated.writerIndex();
+            }
+
+            return this.received != null ? this.received.writerIndex() : 0;
+        }
+
+        /**
+         * Releases the partially received data, if any. This is called when the session
+         * gets discarded before the full payload has been received.
+         */
+        void release()
+        {
+            if (this.received != null)
+            {
+                this.received.release();
+                this.received = null;
+            }
+
+            if (this.inflater != null)
+            {
+                this.inflater.end();
+                this.inflater = null;
+            }
+
+            if (this.inflated != null)
+            {
+                this.inflated.release();
+                this.inflated = null;
+            }
+
+            this.discardBuffer = null;
+        }
+
+        /**
+         * Releases the partially received data, and switches the session to discard
+         * the rest of the fragments of the payload, until the end of the payload.
+         * @return true if the session is now discarding, false if the end
+         *         of the payload can't be tracked, and the session should just be removed
+         */
+        boolean discardRemaining()
+        {
+            if (this.discarding)
+            {
+                return true;
+            }
+
+            if (this.hasStarted() == false)
+            {
+                this.release();
+                return false;
+            }
+
+            if (this.compressed)
+            {
+                // The compressed size isn't known, so the rest of
+                // the data needs to be inflated to find its end
+                if (this.inflater == null)
+                {
+                    this.inflater = new Inflater();
+                }
+
+                this.discardBuffer = new byte[8192];
+                this.discardFinished = this.inflater.finished();
+
+                if (this.inflated != null)
+                {
+                    this.inflated.release();
+                    this.inflated = null;
+                }
+            }
+            else
+            {
+                this.remainingDiscardBytes = (long) this.expectedSize - this.getReceivedBytes();
+                this.discardFinished = this.remainingDiscardBytes <= 0;
+
+                if (this.received != null)
+                {
+                    this.received.release();
+                    this.received = null;
+                }
+            }
+
+            this.discarding = true;
 
-        private ReadingSession(Pair<INetHandler, ResourceLocation> key)
+            if (this.discardFinished)
+            {
+                this.release();
+            }
+
+            return true;
+        }
+
+        /**
+         * Reads the header of the payload from its first packet, without allocating anything for the payload yet.
+         * @throws IllegalArgumentException if the header is invalid, or if the payload is larger than maxLength.
+         *         In the latter case the session switches to discarding the rest of the payload.
+         */
+        void readHeader(PacketBuffer data, int maxLength)
+        {
+            int size = data.readVarInt();
+            boolean compressed = size == COMPRESSED_PAYLOAD_MARKER;
+
+            if (compressed)
+            {
+                size = data.readVarInt();
+            }
+
+            if (size < 0)
+            {
+                throw new IllegalArgumentException("Invalid payload size");
+            }
+
+            this.expectedSize = size;
+            this.compressed = compressed;
+
+            if (size > maxLength)
+            {
+                // Skip the rest of the oversized payload, so that it won't be read as new payloads
+                this.discardRemaining();
+                this.discardData(data);
+                throw new IllegalArgumentException("Payload too large");
+            }
+        }
+
+        /**
+         * @return the full payload once it has been received, or null if more data is still expected.
+         *         Once the payload is returned, the caller is responsible for releasing it.
+         *         Returns null for all the data received after {@link #discardRemaining()} has been called.
+         */
+        @Nullable
+        PacketBuffer receive(PacketBuffer data, int maxLength)
         {
-            this.key = key;
+            if (this.discarding == false && this.hasStarted() == false)
+            {
+                this.readHeader(data, maxLength);
+            }
+
+            return this.receiveData(data);
         }
 
+        /**
+         * Receives the payload data, after the header has been read with {@link #readHeader(PacketBuffer, int)}.
+         * The buffers for the payload are allocated on the first call.
+         * See {@link #receive(PacketBuffer, int)}.
+         */
         @Nullable
-        private PacketBuffer receive(PacketBuffer data, int maxLength)
+        PacketBuffer receiveData(PacketBuffer data)
         {
-            if (this.expectedSize < 0)
+            if (this.discarding)
+            {
+                this.discardData(data);
+                return null;
+            }
+
+            if (this.dataStarted == false)
             {
-                this.expectedSize = data.readVarInt();
+                this.dataStarted = true;
+
+                if (this.compressed)
+                {
+                    this.inflater = new Inflater();
+                    // One extra byte to be able to detect data exceeding the declared size
+                    this.inflated = ALLOCATOR.heapBuffer(this.expectedSize + 1, this.expectedSize + 1);
+                }
+                else
+                {
+                    // Don't let the composite buffer consolidate (= copy) the components
+                    this.received = ALLOCATOR.compositeBuffer(Integer.MAX_VALUE);
+                }
+            }
 
-                if (this.expectedSize > maxLength)
+            if (this.compressed)
+            {
+                if (this.inflater == null)
                 {
-                    throw new IllegalArgumentException("Payload too large");
+                    throw new IllegalStateException("Session has already been released");
                 }
 
-                this.received = new PacketBuffer(Unpooled.buffer(this.expectedSize));
+                return this.receiveCompressed(data);
+            }
+
+            if (this.received == null)
+            {
+                throw new IllegalStateException("Session has already been released");
             }
 
-            this.received.writeBytes(data.readBytes(data.readableBytes()));
+            if (data.isReadable())
+            {
+                this.received.addComponent(true, data.retainedSlice());
+            }
 
             if (this.received.writerIndex() >= this.expectedSize)
             {
-                READING_SESSIONS.remove(this.key);
-                return this.received;
+                PacketBuffer payload = new PacketBuffer(this.received);
+                this.received = null;
+                return payload;
+            }
+
+            return null;
+        }
+
+        @Nullable
+        private PacketBuffer receiveCompressed(PacketBuffer data)
+        {
+            try
+            {
+                this.inflate(data);
+            }
+            catch (DataFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid compressed payload", e);
+            }
+
+            if (this.inflater.finished())
+            {
+                ByteBuf inflated = this.inflated;
+
+                this.inflater.end();
+                this.inflater = null;
+                this.inflated = null;
+
+                if (inflated.writerIndex() != this.expectedSize)
+                {
+                    inflated.release();
+                    throw new IllegalArgumentException("Compressed payload size mismatch");
+                }
+
+                return new PacketBuffer(inflated);
             }
 
             return null;
         }
+
+        private void discardData(PacketBuffer data)
+        {
+            if (this.discardFinished)
+            {
+                return;
+            }
+
+            if (this.compressed == false)
+            {
+                this.remainingDiscardBytes -= data.readableBytes();
+                this.discardFinished = this.remainingDiscardBytes <= 0;
+                return;
+            }
+
+            final Inflater inflater = this.inflater;
+            setInflaterInput(inflater, data);
+
+            try
+            {
+                while (inflater.needsInput() == false && inflater.finished() == false)
+                {
+                    if (inflater.needsDictionary() || inflater.getBytesWritten() > this.expectedSize)
+                    {
+                        break;
+                    }
+
+                    inflater.inflate(this.discardBuffer);
+                }
+            }
+            catch (DataFormatException ignore)
+            {
+                // The end can't be found from invalid data, so just stop discarding
+                this.discardFinished = true;
+            }
+
+            // Either the end of the payload, or the loop above stopped early on bad data
+            if (inflater.finished() || inflater.needsInput() == false)
+            {
+                this.discardFinished = true;
+            }
+
+            if (this.discardFinished)
+            {
+                this.release();
+            }
+        }
+
+        private static void setInflaterInput(Inflater inflater, PacketBuffer data)
+        {
+            final int length = data.readableBytes();
+
+            if (data.hasArray())
+            {
+                inflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), length);
+            }
+            else
+            {
+                byte[] input = new byte[length];
+                data.getBytes(data.readerIndex(), input);
+                inflater.setInput(input);
+            }
+        }
+
+        private void inflate(PacketBuffer data) throws DataFormatException
+        {
+            final Inflater inflater = this.inflater;
+            final ByteBuf out = this.inflated;
+
+            setInflaterInput(inflater, data);
+
+            while (inflater.needsInput() == false && inflater.finished() == false)
+            {
+                if (out.isWritable() == false || inflater.needsDictionary())
+                {
+                    throw new IllegalArgumentException("Decompressed payload larger than the declared size");
+                }
+
+                int writerIndex = out.writerIndex();
+                int inflatedLength = inflater.inflate(out.array(), out.arrayOffset() + writerIndex, out.writableBytes());
+                out.writerIndex(writerIndex + inflatedLength);
+            }
+        }
     }
 }
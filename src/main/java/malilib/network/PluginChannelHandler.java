@@ -21,6 +21,19 @@ public interface PluginChannelHandler
      */
     boolean usePacketSplitter();
 
+    /**
+     * @return the deflate compression level (0 - 9) to use when sending packets
+     * through the PacketSplitter via {@link PacketSplitter#send(PluginChannelHandler, ResourceLocation, PacketBuffer, net.minecraft.client.network.NetHandlerPlayClient)},
+     * or {@link PacketSplitter#NO_COMPRESSION} to send them uncompressed.
+     * Compression should only be enabled once it's known (for example via a protocol version exchange)
+     * that the other end of the connection supports receiving compressed split packets.
+     * Compressed packets are always accepted when receiving.
+     */
+    default int getPacketCompressionLevel()
+    {
+        return PacketSplitter.NO_COMPRESSION;
+    }
+
     /**
      * @return a list of message channels this handler can handle
      */
@@ -0,0 +1,408 @@
+package malilib.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.tuple.Pair;
+
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.network.INetHandler;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.ResourceLocation;
+
+import malilib.MaLiLib;
+import malilib.event.ClientTickHandler;
+import malilib.event.ClientWorldChangeHandler;
+
+/**
+ * Keeps track of the partially received split packets of the {@link PacketSplitter}.
+ * <br><br>
+ * The total memory held by the partially received payloads is limited by a global byte budget.
+ * The budget is reserved based on the declared total size of each payload when its first
+ * packet arrives, after reading the payload header but before allocating any buffers for the payload.
+ * If a new payload doesn't fit in the budget, then the least recently
+ * active other sessions are evicted to make room for it. Sessions that haven't received
+ * any data within the idle timeout are also discarded.
+ * <br><br>
+ * The sessions that are evicted or discarded before the end of their payload are kept
+ * as data-less tombstones, which discard the rest of the fragments of that payload.
+ * Otherwise the next fragment would be read as the start of a new payload.
+ * The tombstones are removed at the end of the payload, or after the idle timeout.
+ * <br><br>
+ * All the methods are synchronized, so the packets can also be received
+ * and decoded on the network thread instead of the client thread.
+ */
+public class SplitPacketSessionManager implements ClientTickHandler, ClientWorldChangeHandler
+{
+    public static final SplitPacketSessionManager INSTANCE = new SplitPacketSessionManager();
+
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 256L * 1024L * 1024L;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000L;
+
+    /** In access order, so that the first entries are the least recently active sessions */
+    protected final LinkedHashMap<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    /** The discarding sessions (tombstones), also in access order */
+    protected final LinkedHashMap<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession> discardingSessions = new LinkedHashMap<>(16, 0.75f, true);
+    protected long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+    protected long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    protected long reservedBytes;
+    protected long completedSessionCount;
+    protected long evictedSessionCount;
+    protected long timedOutSessionCount;
+
+    /**
+     * Passes the packet data to the reading session of the given connection and channel.
+     * @return the full payload, if this packet completed it, otherwise null.
+     *         The caller is responsible for releasing the returned buffer.
+     * @throws IllegalArgumentException if the payload is invalid, or too large for the
+     *         maximum length or for the memory budget. The session is discarded in that case,
+     *         and if the end of the payload can be tracked, then its remaining fragments are discarded too.
+     */
+    @Nullable
+    public synchronized PacketBuffer receive(Pair<INetHandler, ResourceLocation> key, PacketBuffer data, int maxLength)
+    {
+        final long currentTime = System.currentTimeMillis();
+
+        this.removeIdleSessions(currentTime);
+
+        PacketSplitter.ReadingSession discarding = this.discardingSessions.get(key);
+
+        if (discarding != null)
+        {
+            discarding.receive(data, maxLength);
+            discarding.lastActivityTime = currentTime;
+
+            if (discarding.isDiscardFinished())
+            {
+                this.discardingSessions.remove(key);
+            }
+
+            return null;
+        }
+
+        PacketSplitter.ReadingSession session = this.sessions.get(key);
+
+        if (session == null)
+        {
+            session = new PacketSplitter.ReadingSession();
+            this.sessions.put(key, session);
+        }
+
+        PacketBuffer payload;
+
+        try
+        {
+            if (session.hasStarted() == false)
+            {
+                session.readHeader(data, maxLength);
+                session.lastActivityTime = currentTime;
+
+                // Reserve the declared size before the session allocates its buffers
+                if (this.reserveBytes(session) == false)
+                {
+                    this.discardSession(key, session);
+                    this.discardRestOfPacket(key, session, data);
+                    throw new IllegalArgumentException("Payload too large for the split packet memory budget");
+                }
+            }
+
+            payload = session.receiveData(data);
+        }
+        catch (RuntimeException e)
+        {
+            if (this.sessions.remove(key, session))
+            {
+                this.releaseBudget(session);
+
+                // The session switches to discarding the rest of an oversized payload,
+                // but the end of invalid data can't be tracked
+                if (session.isDiscarding())
+                {
+                    this.addTombstone(key, session, currentTime);
+                }
+                else
+                {
+                    session.release();
+                }
+            }
+
+            throw e;
+        }
+
+        if (payload != null)
+        {
+            this.reservedBytes -= session.reservedBytes;
+            this.sessions.remove(key);
+            ++this.completedSessionCount;
+
+            return payload;
+        }
+
+        session.lastActivityTime = currentTime;
+
+        return null;
+    }
+
+    /**
+     * Reserves the declared size of the new payload from the budget,
+     * evicting the least recently active other sessions if needed.
+     * @return false if the payload is larger than the whole budget
+     */
+    protected boolean reserveBytes(PacketSplitter.ReadingSession session)
+    {
+        final long size = session.getExpectedSize();
+
+        if (size > this.maxTotalBytes)
+        {
+            return false;
+        }
+
+        Iterator<Map.Entry<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession>> iter = this.sessions.entrySet().iterator();
+
+        while (this.reservedBytes + size > this.maxTotalBytes && iter.hasNext())
+        {
+            Map.Entry<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession> entry = iter.next();
+            PacketSplitter.ReadingSession other = entry.getValue();
+
+            if (other != session)
+            {
+                MaLiLib.debugLog("SplitPacketSessionManager: Evicting the session for channel '{}' ({} / {} bytes received)",
+                                 entry.getKey().getRight(), other.getReceivedBytes(), other.getExpectedSize());
+                iter.remove();
+                this.releaseBudget(other);
+                this.addTombstone(entry.getKey(), other, session.lastActivityTime);
+                ++this.evictedSessionCount;
+            }
+        }
+
+        this.reservedBytes += size;
+        session.reservedBytes = size;
+
+        return true;
+    }
+
+    /**
+     * Passes the rest of the current packet's data to the tombstone of the just discarded session
+     */
+    protected void discardRestOfPacket(Pair<INetHandler, ResourceLocation> key,
+                                       PacketSplitter.ReadingSession session,
+                                       PacketBuffer data)
+    {
+        if (this.discardingSessions.get(key) == session)
+        {
+            session.receiveData(data);
+
+            if (session.isDiscardFinished())
+            {
+                this.discardingSessions.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the session before the end of its payload, and leaves a tombstone in its place
+     */
+    protected void discardSession(Pair<INetHandler, ResourceLocation> key, PacketSplitter.ReadingSession session)
+    {
+        if (this.sessions.remove(key, session))
+        {
+            this.releaseBudget(session);
+            this.addTombstone(key, session, session.lastActivityTime);
+        }
+    }
+
+    protected void releaseBudget(PacketSplitter.ReadingSession session)
+    {
+        this.reservedBytes -= session.reservedBytes;
+        session.reservedBytes = 0;
+    }
+
+    /**
+     * Switches a session that has already been removed from the map to discard the rest
+     * of its payload's fragments, if the end of the payload can be tracked.
+     */
+    protected void addTombstone(Pair<INetHandler, ResourceLocation> key,
+                                PacketSplitter.ReadingSession session,
+                                long currentTime)
+    {
+        if (session.discardRemaining() && session.isDiscardFinished() == false)
+        {
+            session.lastActivityTime = currentTime;
+            this.discardingSessions.put(key, session);
+        }
+        else
+        {
+            session.release();
+        }
+    }
+
+    protected void removeIdleSessions(long currentTime)
+    {
+        this.removeIdleTombstones(currentTime);
+
+        if (this.sessions.isEmpty())
+        {
+            return;
+        }
+
+        Iterator<Map.Entry<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession>> iter = this.sessions.entrySet().iterator();
+
+        while (iter.hasNext())
+        {
+            Map.Entry<Pair<INetHandler, ResourceLocation>, PacketSplitter.ReadingSession> entry = iter.next();
+            PacketSplitter.ReadingSession session = entry.getValue();
+
+            // The entries are in access order, so the rest are more recent than this
+            if (currentTime - session.lastActivityTime < this.idleTimeoutMs)
+            {
+                break;
+            }
+
+            MaLiLib.debugLog("SplitPacketSessionManager: Discarding the idle session for channel '{}' ({} / {} bytes received)",
+                             entry.getKey().getRight(), session.getReceivedBytes(), session.getExpectedSize());
+            iter.remove();
+            this.releaseBudget(session);
+            this.addTombstone(entry.getKey(), session, currentTime);
+            ++this.timedOutSessionCount;
+        }
+    }
+
+    protected void removeIdleTombstones(long currentTime)
+    {
+        if (this.discardingSessions.isEmpty())
+        {
+            return;
+        }
+
+        Iterator<PacketSplitter.ReadingSession> iter = this.discardingSessions.values().iterator();
+
+        while (iter.hasNext())
+        {
+            PacketSplitter.ReadingSession session = iter.next();
+
+            // The entries are in access order, so the rest are more recent than this
+            if (currentTime - session.lastActivityTime < this.idleTimeoutMs)
+            {
+                break;
+            }
+
+            iter.remove();
+            session.release();
+        }
+    }
+
+    /**
+     * Discards all the partially received payloads
+     */
+    public synchronized void clear()
+    {
+        for (PacketSplitter.ReadingSession session : this.sessions.values())
+        {
+            session.release();
+        }
+
+        for (PacketSplitter.ReadingSession session : this.discardingSessions.values())
+        {
+            session.release();
+        }
+
+        this.evictedSessionCount += this.sessions.size();
+        this.sessions.clear();
+        this.discardingSessions.clear();
+        this.reservedBytes = 0;
+    }
+
+    public synchronized void setMaxTotalBytes(long maxTotalBytes)
+    {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public synchronized void setIdleTimeout(long idleTimeoutMs)
+    {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public synchronized long getMaxTotalBytes()
+    {
+        return this.maxTotalBytes;
+    }
+
+    public synchronized long getIdleTimeout()
+    {
+        return this.idleTimeoutMs;
+    }
+
+    /**
+     * @return the number of partially received payloads
+     */
+    public synchronized int getSessionCount()
+    {
+        return this.sessions.size();
+    }
+
+    /**
+     * @return the number of evicted or timed out sessions that are still discarding the rest of their payload
+     */
+    public synchronized int getDiscardingSessionCount()
+    {
+        return this.discardingSessions.size();
+    }
+
+    /**
+     * @return the number of bytes reserved from the budget by the partially received payloads
+     */
+    public synchronized long getReservedBytes()
+    {
+        return this.reservedBytes;
+    }
+
+    /**
+     * @return the number of bytes of the partially received payloads that have been received so far
+     */
+    public synchronized long getInFlightBytes()
+    {
+        long bytes = 0;
+
+        for (PacketSplitter.ReadingSession session : this.sessions.values())
+        {
+            bytes += session.getReceivedBytes();
+        }
+
+        return bytes;
+    }
+
+    public synchronized long getCompletedSessionCount()
+    {
+        return this.completedSessionCount;
+    }
+
+    public synchronized long getEvictedSessionCount()
+    {
+        return this.evictedSessionCount;
+    }
+
+    public synchronized long getTimedOutSessionCount()
+    {
+        return this.timedOutSessionCount;
+    }
+
+    @Override
+    public void onClientTick()
+    {
+        synchronized (this)
+        {
+            this.removeIdleSessions(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void onPostClientWorldChange(@Nullable WorldClient worldBefore, @Nullable WorldClient worldAfter)
+    {
+        // Disconnected, the sessions can't be completed anymore
+        if (worldAfter == null)
+        {
+            this.clear();
+        }
+    }
+}
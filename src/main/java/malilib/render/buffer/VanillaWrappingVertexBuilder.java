@@ -161,6 +161,64 @@ public class VanillaWrappingVertexBuilder implements VertexBuilder
         return this;
     }
 
+    @Override
+    public VertexBuilder addVertexData(int[] data, float offsetX, float offsetY, float offsetZ)
+    {
+        final int intsPerVertex = this.vertexSize >> 2;
+        final int count = data.length / intsPerVertex;
+        final int posIndex = this.vertexFormat.getPositionOffset() >> 2;
+
+        this.growBuffer(data.length << 2);
+
+        IntBuffer buf = this.rawIntBuffer;
+        int dstStart = this.vertexCount * intsPerVertex;
+
+        for (int vertex = 0; vertex < count; ++vertex)
+        {
+            int srcIndex = vertex * intsPerVertex;
+            int dstIndex = dstStart + srcIndex;
+
+            for (int i = 0; i < intsPerVertex; ++i)
+            {
+                buf.put(dstIndex + i, data[srcIndex + i]);
+            }
+
+            srcIndex += posIndex;
+            dstIndex += posIndex;
+            buf.put(dstIndex    , Float.floatToRawIntBits(Float.intBitsToFloat(data[srcIndex    ]) + offsetX));
+            buf.put(dstIndex + 1, Float.floatToRawIntBits(Float.intBitsToFloat(data[srcIndex + 1]) + offsetY));
+            buf.put(dstIndex + 2, Float.floatToRawIntBits(Float.intBitsToFloat(data[srcIndex + 2]) + offsetZ));
+        }
+
+        this.vertexCount += count;
+
+        return this;
+    }
+
+    @Override
+    public int[] copyVertexData(int startVertex, int vertexCount)
+    {
+        final int intsPerVertex = this.vertexSize >> 2;
+        final int startIndex = startVertex * intsPerVertex;
+        int[] data = new int[vertexCount * intsPerVertex];
+
+        for (int i = 0; i < data.length; ++i)
+        {
+            data[i] = this.rawIntBuffer.get(startIndex + i);
+        }
+
+        return data;
+    }
+
+    @Override
+    public void truncate(int vertexCount)
+    {
+        if (vertexCount >= 0 && vertexCount < this.vertexCount)
+        {
+            this.vertexCount = vertexCount;
+        }
+    }
+
     @Override
     public boolean isStarted()
     {
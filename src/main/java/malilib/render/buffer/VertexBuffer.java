@@ -3,20 +3,49 @@ package malilib.render.buffer;
 import java.nio.ByteBuffer;
 import org.lwjgl.opengl.GL15;
 
+import malilib.util.MathUtils;
 import malilib.util.game.wrap.RenderWrap;
 
 public class VertexBuffer
 {
+    /**
+     * The number of regions in the ring buffer used in the streaming mode.
+     * Each upload goes to the next region, so that the driver doesn't need to
+     * wait for the previous draw calls using the older data to finish.
+     */
+    public static final int STREAMING_RING_REGIONS = 3;
+
     private final VertexFormat vertexFormat;
+    private final boolean streaming;
     private int glBufferId;
     private int vertexCount;
+    private int firstVertex;
+    private int regionSize;
+    private int regionIndex;
 
     public VertexBuffer(VertexFormat vertexFormat)
+    {
+        this(vertexFormat, false);
+    }
+
+    /**
+     * @param streaming if true, then the data is uploaded with glBufferSubData into
+     *                  a ring of regions in a larger buffer, instead of re-allocating
+     *                  the entire buffer on every upload. This is meant for
+     *                  buffers whose data changes frequently.
+     */
+    public VertexBuffer(VertexFormat vertexFormat, boolean streaming)
     {
         this.vertexFormat = vertexFormat;
+        this.streaming = streaming;
         this.glBufferId = RenderWrap.glGenBuffers();
     }
 
+    public boolean isStreaming()
+    {
+        return this.streaming;
+    }
+
     public void bindBuffer()
     {
         RenderWrap.bindBuffer(RenderWrap.GL_ARRAY_BUFFER, this.glBufferId);
@@ -29,15 +58,61 @@ public class VertexBuffer
 
     public void bufferData(ByteBuffer data)
     {
+        if (this.streaming)
+        {
+            this.bufferDataStreaming(data);
+            return;
+        }
+
         this.bindBuffer();
         RenderWrap.bufferData(RenderWrap.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
         this.unbindBuffer();
         this.vertexCount = data.limit() / this.vertexFormat.getSize();
     }
 
+    protected void bufferDataStreaming(ByteBuffer data)
+    {
+        final int vertexSize = this.vertexFormat.getSize();
+        final int dataSize = data.limit();
+
+        if (dataSize == 0)
+        {
+            this.vertexCount = 0;
+            return;
+        }
+
+        this.bindBuffer();
+
+        if (dataSize > this.regionSize)
+        {
+            // Grow the regions with some headroom, so that slowly growing data doesn't re-allocate every time
+            this.regionSize = MathUtils.roundUp(Math.max(dataSize, this.regionSize + (this.regionSize >> 1)), vertexSize);
+            this.regionIndex = 0;
+            RenderWrap.bufferData(RenderWrap.GL_ARRAY_BUFFER, (long) this.regionSize * STREAMING_RING_REGIONS, GL15.GL_STREAM_DRAW);
+        }
+        else
+        {
+            this.regionIndex = (this.regionIndex + 1) % STREAMING_RING_REGIONS;
+
+            // Orphan the old storage when wrapping around, so that the driver
+            // can hand out new memory instead of waiting for the old draws
+            if (this.regionIndex == 0)
+            {
+                RenderWrap.bufferData(RenderWrap.GL_ARRAY_BUFFER, (long) this.regionSize * STREAMING_RING_REGIONS, GL15.GL_STREAM_DRAW);
+            }
+        }
+
+        int offset = this.regionIndex * this.regionSize;
+        RenderWrap.bufferSubData(RenderWrap.GL_ARRAY_BUFFER, offset, data);
+        this.unbindBuffer();
+
+        this.firstVertex = offset / vertexSize;
+        this.vertexCount = dataSize / vertexSize;
+    }
+
     public void drawArrays(int mode)
     {
-        RenderWrap.glDrawArrays(mode, 0, this.vertexCount);
+        RenderWrap.glDrawArrays(mode, this.firstVertex, this.vertexCount);
     }
 
     public void deleteGlBuffers()
@@ -46,6 +121,8 @@ public class VertexBuffer
         {
             RenderWrap.glDeleteBuffers(this.glBufferId);
             this.glBufferId = -1;
+            this.regionSize = 0;
+            this.regionIndex = 0;
         }
     }
 }
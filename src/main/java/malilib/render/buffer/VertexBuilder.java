@@ -1,6 +1,7 @@
 package malilib.render.buffer;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import net.minecraft.client.renderer.block.model.BakedQuad;
 
@@ -63,6 +64,62 @@ public interface VertexBuilder
     void sortVertexData(float cameraX, float cameraY, float cameraZ);
     */
 
+    /**
+     * Appends the given raw vertex data, which must be in the current vertex format of this builder.
+     * The given offsets are added to the positions of all the appended vertices.
+     * The default implementation goes through {@link #getState()} and {@link #setState(VertexBuilderState)},
+     * so implementations should override it with a direct copy.
+     */
+    default VertexBuilder addVertexData(int[] data, float offsetX, float offsetY, float offsetZ)
+    {
+        VertexBuilderState state = this.getState();
+        VertexFormat format = state.getVertexFormat();
+        int[] oldData = state.getVertexData();
+        int[] newData = Arrays.copyOf(oldData, oldData.length + data.length);
+        final int intsPerVertex = format.getSize() >> 2;
+        final int posIndex = format.getPositionOffset() >> 2;
+
+        System.arraycopy(data, 0, newData, oldData.length, data.length);
+
+        for (int i = oldData.length + posIndex; i + 2 < newData.length; i += intsPerVertex)
+        {
+            newData[i    ] = Float.floatToRawIntBits(Float.intBitsToFloat(newData[i    ]) + offsetX);
+            newData[i + 1] = Float.floatToRawIntBits(Float.intBitsToFloat(newData[i + 1]) + offsetY);
+            newData[i + 2] = Float.floatToRawIntBits(Float.intBitsToFloat(newData[i + 2]) + offsetZ);
+        }
+
+        this.setState(new VertexBuilderState(format, newData));
+
+        return this;
+    }
+
+    /**
+     * @return a copy of the raw vertex data of the given range of vertices
+     */
+    default int[] copyVertexData(int startVertex, int vertexCount)
+    {
+        VertexBuilderState state = this.getState();
+        final int intsPerVertex = state.getVertexFormat().getSize() >> 2;
+        final int startIndex = startVertex * intsPerVertex;
+
+        return Arrays.copyOfRange(state.getVertexData(), startIndex, startIndex + vertexCount * intsPerVertex);
+    }
+
+    /**
+     * Discards all the vertices after the given vertex count
+     */
+    default void truncate(int vertexCount)
+    {
+        VertexBuilderState state = this.getState();
+
+        if (vertexCount >= 0 && vertexCount < state.getVertexCount())
+        {
+            VertexFormat format = state.getVertexFormat();
+            int[] data = Arrays.copyOf(state.getVertexData(), vertexCount * (format.getSize() >> 2));
+            this.setState(new VertexBuilderState(format, data));
+        }
+    }
+
     VertexBuilder start();
 
     VertexBuilder start(int glMode, VertexFormat format);
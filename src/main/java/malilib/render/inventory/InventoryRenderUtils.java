@@ -376,7 +376,7 @@ public class InventoryRenderUtils
                 bgTintColor = getShulkerBoxBackgroundTintColor(block);
             }
 
-            InventoryView inv = StorageItemInventoryUtils.getExactStoredItemsView(stack);
+            InventoryView inv = StorageItemInventoryUtils.getCachedExactStoredItemsView(stack);
 
             if (inv == null || inv.getSize()  <= 0)
             {
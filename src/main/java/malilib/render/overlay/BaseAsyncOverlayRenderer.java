@@ -0,0 +1,222 @@
+package malilib.render.overlay;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.lwjgl.opengl.GL11;
+
+import net.minecraft.entity.Entity;
+
+import malilib.MaLiLib;
+import malilib.render.buffer.VanillaWrappingVertexBuilder;
+import malilib.render.buffer.VertexBuilder;
+import malilib.render.buffer.VertexFormats;
+import malilib.util.MathUtils;
+import malilib.util.position.Vec3d;
+
+/**
+ * An overlay renderer which builds its vertex data on a worker thread.
+ * The {@link #update(Vec3d, Entity)} call only captures the data needed for the rebuild
+ * (via {@link #createRebuildTask(Vec3d, Entity)}) on the render thread, and submits the task.
+ * The finished vertex data gets uploaded on the first frame after the task has finished
+ * (even if the renderer is not currently rendering), and until then the previous buffers keep getting drawn.
+ * <br><br>
+ * Each renderer has its own vertex builders, and at most one rebuild is running
+ * for a renderer at any time. If an update is requested while a rebuild is still running,
+ * then another rebuild is requested by calling {@link #setNeedsUpdate()} once the running
+ * rebuild has been uploaded. Thus the {@link #needsUpdate(Entity)} implementation
+ * should return true whenever the {@link #needsUpdate} field is set.
+ * Only {@link #update(Vec3d, Entity)} clears that field, uploading the finished data doesn't,
+ * so that an update requested while a rebuild is running doesn't get lost.
+ * <br><br>
+ * If the GL resources are deleted while a rebuild is running, then the result of that
+ * rebuild is discarded instead of being uploaded, and a new rebuild is requested.
+ */
+public abstract class BaseAsyncOverlayRenderer extends BaseColoredQuadOverlayRenderer
+{
+    @Nullable private static ExecutorService rebuildExecutor;
+
+    @Nullable protected Future<Vec3d> runningRebuild;
+    protected boolean rebuildRequested;
+    protected boolean discardRunningRebuild;
+
+    public BaseAsyncOverlayRenderer()
+    {
+        this(VanillaWrappingVertexBuilder.create(65536, GL11.GL_QUADS, VertexFormats.POSITION_COLOR),
+             VanillaWrappingVertexBuilder.create(65536, GL11.GL_LINES, VertexFormats.POSITION_COLOR));
+    }
+
+    /**
+     * Note: The builders must not be shared with any other renderer,
+     * since they get written to from a worker thread.
+     */
+    public BaseAsyncOverlayRenderer(VertexBuilder quadBuilder, VertexBuilder lineBuilder)
+    {
+        super(quadBuilder, lineBuilder);
+    }
+
+    /**
+     * Creates the task that builds the vertex data on a worker thread.
+     * This method is called on the render thread, so it should capture
+     * any game state that the task needs, as the task itself should not
+     * access the world or other non-thread-safe game state.
+     * @param cameraPos the camera position which should be subtracted from the world coordinates
+     *                  for the vertex positions, see {@link BaseOverlayRenderer#update(Vec3d, Entity)}
+     */
+    protected abstract RebuildTask createRebuildTask(Vec3d cameraPos, Entity entity);
+
+    public boolean isRebuildRunning()
+    {
+        return this.runningRebuild != null;
+    }
+
+    @Override
+    public void setUpdatePosition(Vec3d cameraPosition)
+    {
+        // The position is set when the rebuilt data gets uploaded,
+        // so that the previous buffers keep getting drawn at the correct position
+    }
+
+    @Override
+    public void update(Vec3d cameraPos, Entity entity)
+    {
+        this.needsUpdate = false;
+
+        if (this.runningRebuild != null)
+        {
+            this.rebuildRequested = true;
+            return;
+        }
+
+        final RebuildTask task = this.createRebuildTask(cameraPos, entity);
+
+        this.runningRebuild = getRebuildExecutor().submit(() -> {
+            this.startBuffers();
+            task.buildVertexData(this.quadBuilder, this.lineBuilder);
+            return cameraPos;
+        });
+    }
+
+    /**
+     * Uploads the vertex data from the finished rebuild, if there is one.
+     * This must be called on the render thread.
+     */
+    protected void uploadFinishedRebuild()
+    {
+        Future<Vec3d> future = this.runningRebuild;
+
+        if (future == null || future.isDone() == false)
+        {
+            return;
+        }
+
+        this.runningRebuild = null;
+
+        try
+        {
+            Vec3d cameraPos = future.get();
+
+            if (this.discardRunningRebuild)
+            {
+                // The buffers were deleted (and possibly recreated) after this rebuild was started
+                this.rebuildRequested = true;
+                this.resetBuilders();
+            }
+            else if (this.quadRenderer != null && this.outlineRenderer != null)
+            {
+                this.uploadBuffers();
+                super.setUpdatePosition(cameraPos);
+            }
+            else
+            {
+                this.resetBuilders();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            this.resetBuilders();
+        }
+        catch (ExecutionException e)
+        {
+            MaLiLib.LOGGER.warn("Exception while rebuilding the overlay renderer '{}'", this.getClass().getName(), e);
+            this.resetBuilders();
+        }
+
+        this.discardRunningRebuild = false;
+
+        if (this.rebuildRequested)
+        {
+            this.rebuildRequested = false;
+            this.setNeedsUpdate();
+        }
+    }
+
+    @Override
+    protected void uploadBuffers()
+    {
+        // Don't clear the needsUpdate flag here, as it may have been set while the rebuild was running
+        this.quadRenderer.uploadData(this.quadBuilder);
+        this.outlineRenderer.uploadData(this.lineBuilder);
+    }
+
+    @Override
+    public void deleteGlResources()
+    {
+        // The running task is still writing to the builders, so it can't be cancelled,
+        // but its result must not be uploaded into any recreated buffers
+        if (this.runningRebuild != null)
+        {
+            this.discardRunningRebuild = true;
+        }
+
+        super.deleteGlResources();
+    }
+
+    protected void resetBuilders()
+    {
+        this.quadBuilder.finishDrawing();
+        this.quadBuilder.reset();
+        this.lineBuilder.finishDrawing();
+        this.lineBuilder.reset();
+    }
+
+    @Override
+    public void onPreUpdate()
+    {
+        this.uploadFinishedRebuild();
+    }
+
+    @Override
+    public void draw()
+    {
+        this.uploadFinishedRebuild();
+        super.draw();
+    }
+
+    protected static synchronized ExecutorService getRebuildExecutor()
+    {
+        if (rebuildExecutor == null)
+        {
+            int threadCount = MathUtils.clamp(Runtime.getRuntime().availableProcessors() - 1, 1, 4);
+            ThreadFactory factory = new ThreadFactoryBuilder()
+                                            .setNameFormat("malilib overlay rebuild worker #%d")
+                                            .setDaemon(true).build();
+            rebuildExecutor = Executors.newFixedThreadPool(threadCount, factory);
+        }
+
+        return rebuildExecutor;
+    }
+
+    public interface RebuildTask
+    {
+        /**
+         * Builds the vertex data into the given builders. This is called on a worker thread.
+         */
+        void buildVertexData(VertexBuilder quadBuilder, VertexBuilder lineBuilder);
+    }
+}
@@ -49,8 +49,8 @@ public abstract class BaseColoredQuadOverlayRenderer extends BaseOverlayRenderer
     {
         this.preRender();
 
-        this.quadRenderer.draw();
-        this.outlineRenderer.draw();
+        this.drawRenderObject(this.quadRenderer);
+        this.drawRenderObject(this.outlineRenderer);
 
         this.postRender();
     }
@@ -21,6 +21,7 @@ public abstract class BaseOverlayRenderer
     private Vec3d updateCameraPos = Vec3d.ZERO;
     protected boolean needsUpdate;
     protected boolean disableDepthTest;
+    protected boolean useStreamingUpload;
     protected float lineWidth = 1f;
 
     public void setNeedsUpdate()
@@ -54,6 +55,23 @@ public abstract class BaseOverlayRenderer
         this.disableDepthTest = renderThrough;
     }
 
+    public boolean getUseStreamingUpload()
+    {
+        return this.useStreamingUpload;
+    }
+
+    /**
+     * Sets whether the buffers allocated by this renderer should use the streaming
+     * upload mode. This should be enabled for overlays whose contents change
+     * every few ticks, so that each update doesn't re-allocate the entire VBO.
+     * Note: This only affects buffers allocated after this call,
+     * so this should be called before {@link #allocateGlResources()}.
+     */
+    public void setUseStreamingUpload(boolean useStreamingUpload)
+    {
+        this.useStreamingUpload = useStreamingUpload;
+    }
+
     /**
      * Optional code to run when the overlay is enabled.
      * Note that both implementation and calling this method are left for the
@@ -96,6 +114,14 @@ public abstract class BaseOverlayRenderer
      */
     public abstract void update(Vec3d cameraPos, Entity entity);
 
+    /**
+     * Called on the render thread every frame for all the enabled renderers,
+     * before the update checks, and also when {@link #shouldRender()} returns false.
+     */
+    public void onPreUpdate()
+    {
+    }
+
     protected abstract void startBuffers();
 
     protected abstract void uploadBuffers();
@@ -125,6 +151,15 @@ public abstract class BaseOverlayRenderer
      */
     public abstract void draw();
 
+    /**
+     * Draws the given render object, unless it gets culled by the
+     * culling pass of the {@link OverlayRendererContainer}
+     */
+    protected void drawRenderObject(BaseRenderObject renderObject)
+    {
+        OverlayRendererContainer.INSTANCE.drawRenderObject(renderObject);
+    }
+
     /**
      * Allocates the OpenGL resources according to the current Video settings
      */
@@ -150,7 +185,7 @@ public abstract class BaseOverlayRenderer
      */
     protected BaseRenderObject allocateBuffer(int glMode, VertexFormat vertexFormat, EventListener func)
     {
-        return new VboRenderObject(glMode, vertexFormat, func);
+        return new VboRenderObject(glMode, vertexFormat, func, this.useStreamingUpload);
     }
 
     public String getSaveId()
@@ -1,13 +1,17 @@
 package malilib.render.overlay;
 
+import javax.annotation.Nullable;
+
 import malilib.render.buffer.VertexBuilder;
 import malilib.render.buffer.VertexFormat;
+import malilib.util.position.IntBoundingBox;
 
 public abstract class BaseRenderObject
 {
     protected final VertexFormat vertexFormat;
     protected final boolean hasTexture;
     protected final int glMode;
+    @Nullable protected IntBoundingBox boundingBox;
 
     public BaseRenderObject(int glMode, VertexFormat vertexFormat)
     {
@@ -33,6 +37,26 @@ public abstract class BaseRenderObject
         return this.vertexFormat;
     }
 
+    /**
+     * @return the world-space bounding box of the contents of this render object,
+     *         or null if the object doesn't have a bounding box and thus can't be culled
+     */
+    @Nullable
+    public IntBoundingBox getBoundingBox()
+    {
+        return this.boundingBox;
+    }
+
+    /**
+     * Sets the world-space bounding box of the contents of this render object.
+     * This is used by {@link OverlayRendererContainer} to skip drawing
+     * objects that are outside the view frustum or too far away.
+     */
+    public void setBoundingBox(@Nullable IntBoundingBox boundingBox)
+    {
+        this.boundingBox = boundingBox;
+    }
+
     /**
      * Uploads the given VertexBuilder to the VBO or Render List
      * @param builder the VertexBuilder to upload
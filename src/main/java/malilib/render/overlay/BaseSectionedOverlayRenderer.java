@@ -0,0 +1,388 @@
+package malilib.render.overlay;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.lwjgl.opengl.GL11;
+
+import net.minecraft.entity.Entity;
+
+import malilib.render.RenderContext;
+import malilib.render.buffer.VertexBuilder;
+import malilib.render.buffer.VertexFormat;
+import malilib.util.game.wrap.RenderWrap;
+import malilib.util.position.ChunkSectionPos;
+import malilib.util.position.IntBoundingBox;
+import malilib.util.position.Vec3d;
+
+/**
+ * An overlay renderer which splits its vertex data into chunk sections.
+ * Each section has its own render objects, and only the sections that have
+ * been marked dirty get rebuilt and re-uploaded when the renderer updates.
+ * The clean sections keep their existing buffers.
+ * <br><br>
+ * The implementing class is responsible for marking the sections dirty via
+ * {@link #markSectionDirty(ChunkSectionPos)} when their contents change.
+ * A full update requested via {@link #setNeedsUpdate()} rebuilds all the
+ * currently existing sections.
+ * <br><br>
+ * The bounding box of each section (used for the frustum and distance culling) is
+ * calculated from the vertices that were built for it, so the vertex data may
+ * also extend outside of the section itself.
+ */
+public abstract class BaseSectionedOverlayRenderer extends BaseOverlayRenderer
+{
+    protected final Map<ChunkSectionPos, SectionRenderObjects> sections = new HashMap<>();
+    protected final Set<ChunkSectionPos> dirtySections = new HashSet<>();
+    protected final VertexBuilder quadBuilder;
+    protected final VertexBuilder lineBuilder;
+    protected boolean resourcesAllocated;
+
+    public BaseSectionedOverlayRenderer()
+    {
+        this(BaseColoredQuadOverlayRenderer.COLORED_QUADS_BUILDER, BaseColoredQuadOverlayRenderer.COLORED_LINES_BUILDER);
+    }
+
+    public BaseSectionedOverlayRenderer(VertexBuilder quadBuilder, VertexBuilder lineBuilder)
+    {
+        this.quadBuilder = quadBuilder;
+        this.lineBuilder = lineBuilder;
+    }
+
+    /**
+     * Marks the given section as needing to be rebuilt on the next update
+     */
+    public void markSectionDirty(ChunkSectionPos sectionPos)
+    {
+        this.dirtySections.add(sectionPos);
+    }
+
+    public void markSectionDirty(int sectionX, int sectionY, int sectionZ)
+    {
+        this.markSectionDirty(new ChunkSectionPos(sectionX, sectionY, sectionZ));
+    }
+
+    /**
+     * Marks all the currently existing sections as needing to be rebuilt
+     */
+    public void markAllSectionsDirty()
+    {
+        this.dirtySections.addAll(this.sections.keySet());
+    }
+
+    /**
+     * Removes the given section and frees its buffers
+     */
+    public void removeSection(ChunkSectionPos sectionPos)
+    {
+        SectionRenderObjects section = this.sections.remove(sectionPos);
+
+        if (section != null)
+        {
+            section.deleteGlResources();
+        }
+
+        this.dirtySections.remove(sectionPos);
+    }
+
+    /**
+     * Removes all sections and frees their buffers
+     */
+    public void clearSections()
+    {
+        for (SectionRenderObjects section : this.sections.values())
+        {
+            section.deleteGlResources();
+        }
+
+        this.sections.clear();
+        this.dirtySections.clear();
+    }
+
+    public int getSectionCount()
+    {
+        return this.sections.size();
+    }
+
+    public int getDirtySectionCount()
+    {
+        return this.dirtySections.size();
+    }
+
+    @Override
+    public boolean needsUpdate(Entity entity)
+    {
+        return this.needsUpdate || this.dirtySections.isEmpty() == false;
+    }
+
+    @Override
+    public void update(Vec3d cameraPos, Entity entity)
+    {
+        if (this.needsUpdate)
+        {
+            this.markAllSectionsDirty();
+            this.needsUpdate = false;
+        }
+
+        if (this.resourcesAllocated == false)
+        {
+            return;
+        }
+
+        List<ChunkSectionPos> dirty = new ArrayList<>(this.dirtySections);
+        this.dirtySections.clear();
+
+        for (ChunkSectionPos sectionPos : dirty)
+        {
+            this.updateSection(sectionPos, entity);
+        }
+    }
+
+    protected void updateSection(ChunkSectionPos sectionPos, Entity entity)
+    {
+        this.startBuffers();
+        this.buildSection(sectionPos, this.quadBuilder, this.lineBuilder, entity);
+
+        if (this.quadBuilder.getVertexCount() == 0 && this.lineBuilder.getVertexCount() == 0)
+        {
+            // Finish the builders so that they can be started again for the next section
+            this.quadBuilder.finishDrawing();
+            this.quadBuilder.reset();
+            this.lineBuilder.finishDrawing();
+            this.lineBuilder.reset();
+
+            SectionRenderObjects section = this.sections.remove(sectionPos);
+
+            if (section != null)
+            {
+                section.deleteGlResources();
+            }
+
+            return;
+        }
+
+        SectionRenderObjects section = this.sections.get(sectionPos);
+
+        if (section == null)
+        {
+            section = this.createSectionRenderObjects(sectionPos);
+            this.sections.put(sectionPos, section);
+        }
+
+        // The builders are still started here, so their buffers contain all the vertices
+        section.setBoundingBox(getVertexBounds(section, this.quadBuilder, this.lineBuilder));
+        section.uploadData(this.quadBuilder, this.lineBuilder);
+    }
+
+    /**
+     * @return the block bounding box (in world coordinates) containing all the vertices of the section
+     */
+    protected static IntBoundingBox getVertexBounds(SectionRenderObjects section, VertexBuilder... builders)
+    {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float maxZ = Float.NEGATIVE_INFINITY;
+
+        for (VertexBuilder builder : builders)
+        {
+            ByteBuffer buffer = builder.getByteBuffer();
+            VertexFormat format = builder.getVertexFormat();
+            final int vertexSize = format.getSize();
+            final int end = builder.getVertexCount() * vertexSize;
+
+            for (int offset = format.getPositionOffset(); offset < end; offset += vertexSize)
+            {
+                float x = buffer.getFloat(offset);
+                float y = buffer.getFloat(offset + 4);
+                float z = buffer.getFloat(offset + 8);
+
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                maxZ = Math.max(maxZ, z);
+            }
+        }
+
+        if (minX > maxX)
+        {
+            return section.getSectionBounds();
+        }
+
+        // The vertex positions are relative to the section origin
+        return new IntBoundingBox(section.originX + (int) Math.floor(minX),
+                                  section.originY + (int) Math.floor(minY),
+                                  section.originZ + (int) Math.floor(minZ),
+                                  section.originX + (int) Math.floor(maxX),
+                                  section.originY + (int) Math.floor(maxY),
+                                  section.originZ + (int) Math.floor(maxZ));
+    }
+
+    /**
+     * Builds the vertex data for the given section.
+     * The vertex positions must be relative to the minimum corner of the section,
+     * ie. the block position (sectionX << 4, sectionY << 4, sectionZ << 4).
+     * The vertices may extend outside of the section, for example for boxes crossing the section boundary.
+     * If nothing is added to the builders, then the section is removed.
+     */
+    protected abstract void buildSection(ChunkSectionPos sectionPos,
+                                         VertexBuilder quadBuilder,
+                                         VertexBuilder lineBuilder,
+                                         Entity entity);
+
+    protected SectionRenderObjects createSectionRenderObjects(ChunkSectionPos sectionPos)
+    {
+        return new SectionRenderObjects(sectionPos,
+                                        this.allocateBuffer(GL11.GL_QUADS),
+                                        this.allocateBuffer(GL11.GL_LINES));
+    }
+
+    @Override
+    protected void startBuffers()
+    {
+        this.quadBuilder.start();
+        this.lineBuilder.start();
+    }
+
+    @Override
+    protected void uploadBuffers()
+    {
+        // The sections are uploaded individually in updateSection()
+    }
+
+    @Override
+    public void draw()
+    {
+        Vec3d updatePos = this.getUpdatePosition();
+        RenderContext ctx = RenderContext.DUMMY;
+        OverlayRendererContainer container = OverlayRendererContainer.INSTANCE;
+
+        this.preRender();
+
+        for (SectionRenderObjects section : this.sections.values())
+        {
+            if (container.isVisible(section.boundingBox) == false)
+            {
+                container.onRenderObjectsCulled(2);
+                continue;
+            }
+
+            // The container has translated by (updatePos - cameraPos),
+            // so this results in a translation of (sectionOrigin - cameraPos)
+            RenderWrap.pushMatrix(ctx);
+            RenderWrap.translate(section.originX - updatePos.x,
+                                 section.originY - updatePos.y,
+                                 section.originZ - updatePos.z, ctx);
+            section.draw();
+            RenderWrap.popMatrix(ctx);
+
+            container.onRenderObjectsDrawn(2);
+        }
+
+        this.postRender();
+    }
+
+    @Override
+    public void allocateGlResources()
+    {
+        // The section buffers are allocated lazily when the sections are built
+        this.resourcesAllocated = true;
+    }
+
+    @Override
+    public void deleteGlResources()
+    {
+        // Keep the section positions around, so that they get rebuilt
+        // once the resources are allocated again
+        this.markAllSectionsDirty();
+
+        for (SectionRenderObjects section : this.sections.values())
+        {
+            section.deleteGlResources();
+        }
+
+        this.sections.clear();
+        this.resourcesAllocated = false;
+    }
+
+    public static class SectionRenderObjects
+    {
+        public final ChunkSectionPos sectionPos;
+        public final int originX;
+        public final int originY;
+        public final int originZ;
+        /** The bounds of the vertex data of the section, which may extend outside of the section itself */
+        public IntBoundingBox boundingBox;
+        @Nullable protected BaseRenderObject quadRenderer;
+        @Nullable protected BaseRenderObject outlineRenderer;
+
+        public SectionRenderObjects(ChunkSectionPos sectionPos,
+                                    BaseRenderObject quadRenderer,
+                                    BaseRenderObject outlineRenderer)
+        {
+            this.sectionPos = sectionPos;
+            this.originX = sectionPos.getX() << 4;
+            this.originY = sectionPos.getY() << 4;
+            this.originZ = sectionPos.getZ() << 4;
+            this.boundingBox = this.getSectionBounds();
+            this.quadRenderer = quadRenderer;
+            this.outlineRenderer = outlineRenderer;
+        }
+
+        /**
+         * @return the bounds of the section itself
+         */
+        public IntBoundingBox getSectionBounds()
+        {
+            return new IntBoundingBox(this.originX, this.originY, this.originZ,
+                                      this.originX + 15, this.originY + 15, this.originZ + 15);
+        }
+
+        public void setBoundingBox(IntBoundingBox boundingBox)
+        {
+            this.boundingBox = boundingBox;
+        }
+
+        public void uploadData(VertexBuilder quadBuilder, VertexBuilder lineBuilder)
+        {
+            if (this.quadRenderer != null && this.outlineRenderer != null)
+            {
+                this.quadRenderer.uploadData(quadBuilder);
+                this.outlineRenderer.uploadData(lineBuilder);
+            }
+        }
+
+        public void draw()
+        {
+            if (this.quadRenderer != null && this.outlineRenderer != null)
+            {
+                this.quadRenderer.draw();
+                this.outlineRenderer.draw();
+            }
+        }
+
+        public void deleteGlResources()
+        {
+            if (this.quadRenderer != null)
+            {
+                this.quadRenderer.deleteGlResources();
+                this.quadRenderer = null;
+            }
+
+            if (this.outlineRenderer != null)
+            {
+                this.outlineRenderer.deleteGlResources();
+                this.outlineRenderer = null;
+            }
+        }
+    }
+}
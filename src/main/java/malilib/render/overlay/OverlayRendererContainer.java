@@ -4,20 +4,24 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.opengl.GL11;
 
+import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.entity.Entity;
 
+import malilib.MaLiLibConfigs;
 import malilib.render.RenderContext;
 import malilib.util.BackupUtils;
 import malilib.util.data.json.JsonUtils;
 import malilib.util.game.wrap.EntityWrap;
 import malilib.util.game.wrap.GameWrap;
 import malilib.util.game.wrap.RenderWrap;
+import malilib.util.position.IntBoundingBox;
 import malilib.util.position.Vec3d;
 
 public class OverlayRendererContainer
@@ -29,6 +33,13 @@ public class OverlayRendererContainer
     protected boolean resourcesAllocated;
     protected boolean useVbo;
     protected int countActive;
+    protected int countDrawn;
+    protected int countCulled;
+    @Nullable protected Frustum frustum;
+    protected double cullDistanceSq;
+    protected double cameraX;
+    protected double cameraY;
+    protected double cameraZ;
 
     private boolean canRender;
     private boolean enabledRenderersNeedUpdate;
@@ -144,6 +155,8 @@ public class OverlayRendererContainer
         {
             GameWrap.profilerPush(() -> renderer.getClass().getName());
 
+            renderer.onPreUpdate();
+
             if (renderer.shouldRender())
             {
                 if (renderer.needsUpdate(entity))
@@ -160,10 +173,110 @@ public class OverlayRendererContainer
         }
     }
 
+    /**
+     * @return the number of render objects that were drawn during the last frame
+     */
+    public int getDrawnRenderObjectCount()
+    {
+        return this.countDrawn;
+    }
+
+    /**
+     * @return the number of render objects that were culled during the last frame
+     */
+    public int getCulledRenderObjectCount()
+    {
+        return this.countCulled;
+    }
+
+    protected void setupCulling(Vec3d cameraPos)
+    {
+        int distance = MaLiLibConfigs.Generic.OVERLAY_CULLING_DISTANCE.getIntegerValue();
+
+        this.cameraX = cameraPos.x;
+        this.cameraY = cameraPos.y;
+        this.cameraZ = cameraPos.z;
+        this.cullDistanceSq = distance > 0 ? (double) distance * (double) distance : -1.0;
+        this.countDrawn = 0;
+        this.countCulled = 0;
+
+        if (MaLiLibConfigs.Generic.OVERLAY_FRUSTUM_CULLING.getBooleanValue())
+        {
+            // This captures the current projection and model view matrices
+            this.frustum = new Frustum();
+            this.frustum.setPosition(this.cameraX, this.cameraY, this.cameraZ);
+        }
+        else
+        {
+            this.frustum = null;
+        }
+    }
+
+    /**
+     * @return true if the given world-space box is within the view frustum and the culling distance.
+     *         A null box is always considered visible.
+     */
+    public boolean isVisible(@Nullable IntBoundingBox box)
+    {
+        if (box == null)
+        {
+            return true;
+        }
+
+        double minX = box.minX;
+        double minY = box.minY;
+        double minZ = box.minZ;
+        double maxX = box.maxX + 1.0;
+        double maxY = box.maxY + 1.0;
+        double maxZ = box.maxZ + 1.0;
+
+        if (this.cullDistanceSq > 0.0)
+        {
+            double dx = this.cameraX < minX ? minX - this.cameraX : (this.cameraX > maxX ? this.cameraX - maxX : 0.0);
+            double dy = this.cameraY < minY ? minY - this.cameraY : (this.cameraY > maxY ? this.cameraY - maxY : 0.0);
+            double dz = this.cameraZ < minZ ? minZ - this.cameraZ : (this.cameraZ > maxZ ? this.cameraZ - maxZ : 0.0);
+
+            if (dx * dx + dy * dy + dz * dz > this.cullDistanceSq)
+            {
+                return false;
+            }
+        }
+
+        return this.frustum == null || this.frustum.isBoxInFrustum(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Draws the given render object, if its bounding box (if any) is visible
+     */
+    public void drawRenderObject(BaseRenderObject renderObject)
+    {
+        if (this.isVisible(renderObject.getBoundingBox()))
+        {
+            renderObject.draw();
+            ++this.countDrawn;
+        }
+        else
+        {
+            ++this.countCulled;
+        }
+    }
+
+    public void onRenderObjectsDrawn(int count)
+    {
+        this.countDrawn += count;
+    }
+
+    public void onRenderObjectsCulled(int count)
+    {
+        this.countCulled += count;
+    }
+
     protected void draw(Vec3d cameraPos, RenderContext ctx)
     {
         if (this.resourcesAllocated && this.countActive > 0)
         {
+            this.setupCulling(cameraPos);
+
             RenderWrap.pushMatrix(ctx);
 
             RenderWrap.disableTexture2D();
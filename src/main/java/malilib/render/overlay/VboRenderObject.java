@@ -14,10 +14,19 @@ public class VboRenderObject extends BaseRenderObject
     protected final EventListener arrayPointerSetter;
 
     public VboRenderObject(int glMode, VertexFormat vertexFormat, EventListener arrayPointerSetter)
+    {
+        this(glMode, vertexFormat, arrayPointerSetter, false);
+    }
+
+    /**
+     * @param streaming if true, then the VBO uses the streaming upload mode,
+     *                  see {@link VertexBuffer#VertexBuffer(VertexFormat, boolean)}
+     */
+    public VboRenderObject(int glMode, VertexFormat vertexFormat, EventListener arrayPointerSetter, boolean streaming)
     {
         super(glMode, vertexFormat);
 
-        this.vertexBuffer = new VertexBuffer(vertexFormat);
+        this.vertexBuffer = new VertexBuffer(vertexFormat, streaming);
         this.arrayPointerSetter = arrayPointerSetter;
     }
 
@@ -0,0 +1,292 @@
+package malilib.render.text;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.client.renderer.texture.TextureUtil;
+import net.minecraft.client.resources.IResource;
+
+import malilib.MaLiLib;
+import malilib.MaLiLibReference;
+import malilib.util.data.Identifier;
+import malilib.util.game.wrap.GameWrap;
+
+/**
+ * A runtime texture atlas, which packs the used glyphs from all the font sheets
+ * (the ASCII sheet and the unicode pages) into one or a few textures.
+ * This allows rendering text with mixed glyph sheets without having to
+ * re-bind textures and flush the vertex buffer between the segments.
+ * The glyphs are added lazily when they are first rendered.
+ * Only the pixels of the few most recently used font sheets are kept in memory
+ * for adding new glyphs, the other sheets are read again if they are needed later.
+ * All the methods must be called on the render thread.
+ */
+public class GlyphAtlas
+{
+    public static final int PAGE_SIZE = 1024;
+    protected static final int PADDING = 1;
+    protected static final int MAX_CACHED_SOURCE_IMAGES = 4;
+
+    protected final List<AtlasPage> pages = new ArrayList<>();
+    protected final Map<Glyph, Glyph> atlasGlyphs = new IdentityHashMap<>();
+    protected final Map<Identifier, SourceImage> sourceImages = new LinkedHashMap<Identifier, SourceImage>(8, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Identifier, SourceImage> eldest)
+        {
+            return this.size() > MAX_CACHED_SOURCE_IMAGES;
+        }
+    };
+    protected final Set<Identifier> failedSourceImages = new HashSet<>();
+
+    /**
+     * @return the atlas version of the given glyph, adding it to the atlas if necessary.
+     *         If the glyph can't be added to the atlas, then the original glyph is returned.
+     */
+    public Glyph getAtlasGlyph(Glyph glyph)
+    {
+        Glyph atlasGlyph = this.atlasGlyphs.get(glyph);
+
+        if (atlasGlyph == null)
+        {
+            atlasGlyph = this.addGlyph(glyph);
+            this.atlasGlyphs.put(glyph, atlasGlyph);
+        }
+
+        return atlasGlyph;
+    }
+
+    protected Glyph addGlyph(Glyph glyph)
+    {
+        SourceImage source = this.getSourceImage(glyph.texture);
+
+        if (source == null)
+        {
+            return glyph;
+        }
+
+        int x1 = Math.round(glyph.u1 * source.width);
+        int y1 = Math.round(glyph.v1 * source.height);
+        int x2 = Math.round(glyph.u2 * source.width);
+        int y2 = Math.round(glyph.v2 * source.height);
+        int width = x2 - x1;
+        int height = y2 - y1;
+
+        if (width <= 0 || height <= 0 || x2 > source.width || y2 > source.height ||
+            width + PADDING * 2 > PAGE_SIZE || height + PADDING * 2 > PAGE_SIZE)
+        {
+            return glyph;
+        }
+
+        for (AtlasPage page : this.pages)
+        {
+            Glyph atlasGlyph = page.tryAdd(glyph, source, x1, y1, width, height);
+
+            if (atlasGlyph != null)
+            {
+                return atlasGlyph;
+            }
+        }
+
+        AtlasPage page = this.createPage();
+        Glyph atlasGlyph = page.tryAdd(glyph, source, x1, y1, width, height);
+
+        return atlasGlyph != null ? atlasGlyph : glyph;
+    }
+
+    protected AtlasPage createPage()
+    {
+        Identifier id = new Identifier(MaLiLibReference.MOD_ID, "font/glyph_atlas_" + this.pages.size());
+        AtlasPage page = new AtlasPage(id);
+        GameWrap.getClient().getTextureManager().loadTexture(id, page.texture);
+        this.pages.add(page);
+        return page;
+    }
+
+    @Nullable
+    protected SourceImage getSourceImage(Identifier texture)
+    {
+        SourceImage source = this.sourceImages.get(texture);
+
+        if (source != null || this.failedSourceImages.contains(texture))
+        {
+            return source;
+        }
+
+        try (IResource resource = GameWrap.getClient().getResourceManager().getResource(texture))
+        {
+            BufferedImage image = TextureUtil.readBufferedImage(resource.getInputStream());
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int[] pixels = new int[width * height];
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+            source = new SourceImage(pixels, width, height);
+            this.sourceImages.put(texture, source);
+        }
+        catch (IOException e)
+        {
+            MaLiLib.LOGGER.warn("Failed to read the font texture '{}' for the glyph atlas", texture);
+            // Remember the failed reads, so that they are not retried for every glyph
+            this.failedSourceImages.add(texture);
+        }
+
+        return source;
+    }
+
+    /**
+     * Uploads the changed atlas pages to the GPU
+     */
+    public void uploadPendingChanges()
+    {
+        for (AtlasPage page : this.pages)
+        {
+            page.uploadIfDirty();
+        }
+    }
+
+    /**
+     * Clears all the glyphs from the atlas, but keeps the already allocated textures.
+     * This should be called when the resources are reloaded.
+     */
+    public void clear()
+    {
+        this.atlasGlyphs.clear();
+        this.sourceImages.clear();
+        this.failedSourceImages.clear();
+
+        for (AtlasPage page : this.pages)
+        {
+            page.clear();
+        }
+    }
+
+    public int getPageCount()
+    {
+        return this.pages.size();
+    }
+
+    public int getGlyphCount()
+    {
+        return this.atlasGlyphs.size();
+    }
+
+    /**
+     * A glyph that has been packed into the atlas
+     */
+    public static class AtlasGlyph extends Glyph
+    {
+        public final Glyph sourceGlyph;
+
+        public AtlasGlyph(Identifier texture, float u1, float v1, float u2, float v2, Glyph sourceGlyph)
+        {
+            super(texture, u1, v1, u2, v2, sourceGlyph.width, sourceGlyph.height,
+                  sourceGlyph.renderWidth, sourceGlyph.whiteSpace, sourceGlyph.c);
+
+            this.sourceGlyph = sourceGlyph;
+        }
+    }
+
+    protected static class SourceImage
+    {
+        public final int[] pixels;
+        public final int width;
+        public final int height;
+
+        public SourceImage(int[] pixels, int width, int height)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * One atlas texture, which uses simple shelf packing.
+     * The glyphs of one font sheet generally have the same height,
+     * so this wastes very little space in practice.
+     */
+    protected static class AtlasPage
+    {
+        protected final Identifier id;
+        protected final DynamicTexture texture;
+        protected final int[] data;
+        protected int shelfX;
+        protected int shelfY;
+        protected int shelfHeight;
+        protected boolean dirty;
+
+        public AtlasPage(Identifier id)
+        {
+            this.id = id;
+            this.texture = new DynamicTexture(PAGE_SIZE, PAGE_SIZE);
+            this.data = this.texture.getTextureData();
+        }
+
+        @Nullable
+        public Glyph tryAdd(Glyph glyph, SourceImage source, int srcX, int srcY, int width, int height)
+        {
+            int paddedWidth = width + PADDING * 2;
+            int paddedHeight = height + PADDING * 2;
+
+            if (this.shelfX + paddedWidth > PAGE_SIZE)
+            {
+                this.shelfX = 0;
+                this.shelfY += this.shelfHeight;
+                this.shelfHeight = 0;
+            }
+
+            if (this.shelfY + paddedHeight > PAGE_SIZE)
+            {
+                return null;
+            }
+
+            int dstX = this.shelfX + PADDING;
+            int dstY = this.shelfY + PADDING;
+
+            for (int y = 0; y < height; ++y)
+            {
+                System.arraycopy(source.pixels, (srcY + y) * source.width + srcX,
+                                 this.data, (dstY + y) * PAGE_SIZE + dstX, width);
+            }
+
+            this.shelfX += paddedWidth;
+            this.shelfHeight = Math.max(this.shelfHeight, paddedHeight);
+            this.dirty = true;
+
+            float u1 = (float) dstX / (float) PAGE_SIZE;
+            float v1 = (float) dstY / (float) PAGE_SIZE;
+            float u2 = (float) (dstX + width) / (float) PAGE_SIZE;
+            float v2 = (float) (dstY + height) / (float) PAGE_SIZE;
+
+            return new AtlasGlyph(this.id, u1, v1, u2, v2, glyph);
+        }
+
+        public void uploadIfDirty()
+        {
+            if (this.dirty)
+            {
+                this.texture.updateDynamicTexture();
+                this.dirty = false;
+            }
+        }
+
+        public void clear()
+        {
+            Arrays.fill(this.data, 0);
+            this.shelfX = 0;
+            this.shelfY = 0;
+            this.shelfHeight = 0;
+            this.dirty = true;
+        }
+    }
+}
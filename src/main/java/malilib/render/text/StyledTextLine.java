@@ -26,6 +26,8 @@ public class StyledTextLine
     public final String originalString;
     public final int glyphCount;
     public final int renderWidth;
+    /** Used by the {@link TextRenderer} to only bake the vertex data of lines that get rendered more than once */
+    protected boolean seenByRenderer;
 
     public StyledTextLine(ImmutableList<StyledTextSegment> segments)
     {
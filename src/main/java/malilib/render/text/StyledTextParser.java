@@ -20,6 +20,22 @@ public class StyledTextParser
     protected static final Pattern PATTERN_COLOR_6 = Pattern.compile("[0-9a-fA-F]{6}>");
     protected static final Pattern PATTERN_COLOR_8 = Pattern.compile("[0-9a-fA-F]{8}>");
 
+    // Token types for the streaming parser. The encoded token value is (length << 8) | (state << 4) | type
+    protected static final int TOKEN_BOLD = 1;
+    protected static final int TOKEN_ITALIC = 2;
+    protected static final int TOKEN_UNDERLINE = 3;
+    protected static final int TOKEN_STRIKE_THROUGH = 4;
+    protected static final int TOKEN_SHADOW = 5;
+    protected static final int TOKEN_RANDOM = 6;
+    protected static final int TOKEN_RESET = 7;
+    protected static final int TOKEN_COLOR_RESET = 8;
+    protected static final int TOKEN_SHADOW_COLOR_RESET = 9;
+    protected static final int TOKEN_COLOR = 10;
+    protected static final int TOKEN_SHADOW_COLOR = 11;
+    protected static final int TOKEN_VANILLA_STYLE = 12;
+    protected static final int TOKEN_LINE_BREAK = 13;
+    protected static final int TOKEN_STATE_ON = 0x10;
+
     public static ImmutableList<StyledTextLine> parseString(String str, Optional<TextStyle> startingStyle)
     {
         StyledTextBuilder builder = startingStyle.isPresent() ? StyledText.builder(startingStyle.get()) : StyledText.builder();
@@ -240,6 +256,356 @@ public class StyledTextParser
         return token;
     }
 
+    /**
+     * Calculates the render width of the given styled text, without building the
+     * token list or the StyledText object. This recognizes the exact same style tokens
+     * as {@link #parseString(String)}, and the result is the same as what
+     * {@link StyledText#getRenderWidth()} would return for the same string,
+     * ie. the width of the widest line. This method does not allocate anything.
+     */
+    public static int getRenderWidth(CharSequence text)
+    {
+        final TextRenderer renderer = TextRenderer.INSTANCE;
+        final int end = text.length();
+        int maxWidth = 0;
+        int lineWidth = 0;
+        boolean bold = false;
+        int pos = 0;
+
+        while (pos < end)
+        {
+            int token = readTokenAt(text, pos, end);
+
+            if (token == 0)
+            {
+                Glyph glyph = renderer.getGlyphFor(text.charAt(pos));
+                lineWidth += bold ? glyph.renderWidthWhenBold : glyph.renderWidth;
+                ++pos;
+                continue;
+            }
+
+            int type = token & 0xF;
+
+            if (type == TOKEN_BOLD)
+            {
+                bold = (token & TOKEN_STATE_ON) != 0;
+            }
+            else if (type == TOKEN_RESET)
+            {
+                bold = false;
+            }
+            else if (type == TOKEN_VANILLA_STYLE)
+            {
+                char code = Character.toLowerCase(text.charAt(pos + 1));
+
+                if (code == 'l')
+                {
+                    bold = true;
+                }
+                // Random, strike-through, underline and italic don't affect the width,
+                // the reset and all the color codes reset the vanilla styles
+                else if (code != 'k' && code != 'm' && code != 'n' && code != 'o')
+                {
+                    bold = false;
+                }
+            }
+            else if (type == TOKEN_LINE_BREAK)
+            {
+                maxWidth = Math.max(maxWidth, lineWidth);
+                lineWidth = 0;
+            }
+
+            pos += token >>> 8;
+        }
+
+        return Math.max(maxWidth, lineWidth);
+    }
+
+    /**
+     * Parses the given styled text in one pass, and passes the display text segments
+     * directly to the visitor, without building the token list or any intermediate strings.
+     * The segments are passed as index ranges into the input text, and the current style
+     * is passed as the given style builder, which gets modified as the style tokens are encountered.
+     * The only allocations are the Color4f instances for the color tokens.
+     * @param text the text to parse
+     * @param style the starting style, this will be modified by the style tokens in the text
+     * @param visitor the visitor that receives the text segments and line breaks
+     */
+    public static void parseStreaming(CharSequence text, TextStyle.Builder style, SegmentVisitor visitor)
+    {
+        final int end = text.length();
+        int segmentStart = 0;
+        int pos = 0;
+
+        while (pos < end)
+        {
+            int token = readTokenAt(text, pos, end);
+
+            if (token == 0)
+            {
+                ++pos;
+                continue;
+            }
+
+            if (pos > segmentStart)
+            {
+                visitor.onText(text, segmentStart, pos, style);
+            }
+
+            applyToken(text, pos, token, style, visitor);
+            pos += token >>> 8;
+            segmentStart = pos;
+        }
+
+        if (end > segmentStart)
+        {
+            visitor.onText(text, segmentStart, end, style);
+        }
+    }
+
+    /**
+     * Checks if there is a style token or a line break at the given position.
+     * This follows the same rules as {@link #readTokens(StringReader, List)}.
+     * @return the encoded token, or 0 if there is no token at the given position
+     */
+    protected static int readTokenAt(CharSequence text, int pos, int end)
+    {
+        char previous = pos > 0 ? text.charAt(pos - 1) : 0;
+        char current = text.charAt(pos);
+        char next = pos < end - 1 ? text.charAt(pos + 1) : 0;
+
+        if (current == '<')
+        {
+            return previous != '\\' ? readStyleTagAt(text, pos, end) : 0;
+        }
+        else if (current == '§' && previous != '\\' && VANILLA_FORMAT_CODES.indexOf(next) != -1)
+        {
+            return (2 << 8) | TOKEN_VANILLA_STYLE;
+        }
+        else if (current == '\\' && next == 'n' && previous != '\\')
+        {
+            return (2 << 8) | TOKEN_LINE_BREAK;
+        }
+        else if (current == '\n')
+        {
+            return (1 << 8) | TOKEN_LINE_BREAK;
+        }
+
+        return 0;
+    }
+
+    /**
+     * The non-allocating equivalent of {@link #tryReadStyleTokenAt(StringReader)}
+     * @return the encoded token, or 0 if there is no valid style tag at the given position
+     */
+    protected static int readStyleTagAt(CharSequence text, int pos, int end)
+    {
+        int nameStart = pos + 1;
+        boolean state = true;
+
+        if (nameStart < end)
+        {
+            char c = text.charAt(nameStart);
+
+            if (c == '/' || c == '!' || c == '^')
+            {
+                state = false;
+                ++nameStart;
+            }
+        }
+
+        int type;
+        int nameLength;
+
+        if      (startsWith(text, nameStart, end, "b>"))    { type = TOKEN_BOLD;            nameLength = 2; }
+        else if (startsWith(text, nameStart, end, "i>"))    { type = TOKEN_ITALIC;          nameLength = 2; }
+        else if (startsWith(text, nameStart, end, "u>"))    { type = TOKEN_UNDERLINE;       nameLength = 2; }
+        else if (startsWith(text, nameStart, end, "st>"))   { type = TOKEN_STRIKE_THROUGH;  nameLength = 3; }
+        else if (startsWith(text, nameStart, end, "sh>"))   { type = TOKEN_SHADOW;          nameLength = 3; }
+        else if (startsWith(text, nameStart, end, "rnd>"))  { type = TOKEN_RANDOM;          nameLength = 4; }
+        // negated reset state is not valid
+        else if (state && startsWith(text, nameStart, end, "rst>")) { type = TOKEN_RESET; nameLength = 4; }
+        // color reset
+        else if (state == false && startsWith(text, nameStart, end, "c>"))   { type = TOKEN_COLOR_RESET;        nameLength = 2; }
+        else if (state == false && startsWith(text, nameStart, end, "csh>")) { type = TOKEN_SHADOW_COLOR_RESET; nameLength = 4; }
+        // color start
+        else if (state && (startsWith(text, nameStart, end, "c=") || startsWith(text, nameStart, end, "csh=")))
+        {
+            boolean shadow = text.charAt(nameStart + 1) == 's';
+            int prefixLength = shadow ? 4 : 2;
+            int hexLength = getColorHexLength(text, nameStart + prefixLength, end);
+
+            if (hexLength == 0)
+            {
+                return 0;
+            }
+
+            type = shadow ? TOKEN_SHADOW_COLOR : TOKEN_COLOR;
+            nameLength = prefixLength + hexLength + 1;
+        }
+        else
+        {
+            return 0;
+        }
+
+        int length = nameStart + nameLength - pos;
+
+        return (length << 8) | (state ? TOKEN_STATE_ON : 0) | type;
+    }
+
+    protected static void applyToken(CharSequence text, int pos, int token, TextStyle.Builder style, SegmentVisitor visitor)
+    {
+        boolean state = (token & TOKEN_STATE_ON) != 0;
+
+        switch (token & 0xF)
+        {
+            case TOKEN_BOLD:                style.withBold(state); break;
+            case TOKEN_ITALIC:              style.withItalic(state); break;
+            case TOKEN_UNDERLINE:           style.withUnderline(state); break;
+            case TOKEN_STRIKE_THROUGH:      style.withStrikeThrough(state); break;
+            case TOKEN_SHADOW:              style.withShadow(state); break;
+            case TOKEN_RANDOM:              style.withRandom(state); break;
+            case TOKEN_RESET:               style.resetAll(); break;
+            case TOKEN_COLOR_RESET:         style.withColor(null); break;
+            case TOKEN_SHADOW_COLOR_RESET:  style.withShadowColor(null); break;
+            case TOKEN_COLOR:               style.withColor(parseColorTagValue(text, pos + 3, (token >>> 8) - 4)); break;
+            case TOKEN_SHADOW_COLOR:        style.withShadowColor(parseColorTagValue(text, pos + 5, (token >>> 8) - 6)); break;
+            case TOKEN_VANILLA_STYLE:       applyVanillaStyleCode(Character.toLowerCase(text.charAt(pos + 1)), style); break;
+            case TOKEN_LINE_BREAK:          visitor.onLineBreak(); break;
+        }
+    }
+
+    protected static void applyVanillaStyleCode(char code, TextStyle.Builder style)
+    {
+        switch (code)
+        {
+            case 'k': style.withRandom(true); break;
+            case 'l': style.withBold(true); break;
+            case 'm': style.withStrikeThrough(true); break;
+            case 'n': style.withUnderline(true); break;
+            case 'o': style.withItalic(true); break;
+            case 'r': style.resetVanillaStyles(); break;
+            default:
+                style.resetVanillaStyles();
+                style.withColor(Color4f.fromColor(TextRenderer.INSTANCE.getColorCode(code), 1f));
+        }
+    }
+
+    /**
+     * @return the number of hex digits (8, 6, 4 or 3) in a valid color value
+     *         that is followed by the closing '>', or 0 if there is no valid color value
+     */
+    protected static int getColorHexLength(CharSequence text, int start, int end)
+    {
+        int hexLength = 0;
+
+        while (hexLength < 8 && start + hexLength < end &&
+               getHexDigitValue(text.charAt(start + hexLength)) != -1)
+        {
+            ++hexLength;
+        }
+
+        if (start + hexLength >= end)
+        {
+            return 0;
+        }
+
+        // Same priority as in tryReadStyleTokenAt(), ie. the longest valid value
+        // that is directly followed by the closing '>'
+        if (hexLength == 8 && text.charAt(start + 8) == '>') { return 8; }
+        if (hexLength >= 6 && text.charAt(start + 6) == '>') { return 6; }
+        if (hexLength >= 4 && text.charAt(start + 4) == '>') { return 4; }
+        if (hexLength >= 3 && text.charAt(start + 3) == '>') { return 3; }
+
+        return 0;
+    }
+
+    /**
+     * @return the value of the ASCII hex digit, or -1 if the character is not one.
+     *         Unlike {@link Character#digit(char, int)}, this doesn't accept any non-ASCII
+     *         digits or letters, the same as the <b>[0-9a-fA-F]</b> token patterns.
+     */
+    protected static int getHexDigitValue(char c)
+    {
+        if (c >= '0' && c <= '9') { return c - '0'; }
+        if (c >= 'a' && c <= 'f') { return c - 'a' + 10; }
+        if (c >= 'A' && c <= 'F') { return c - 'A' + 10; }
+
+        return -1;
+    }
+
+    protected static Color4f parseColorTagValue(CharSequence text, int start, int hexLength)
+    {
+        int value = 0;
+
+        for (int i = 0; i < hexLength; ++i)
+        {
+            value = (value << 4) | getHexDigitValue(text.charAt(start + i));
+        }
+
+        if (hexLength == 8)
+        {
+            return Color4f.fromColor(value);
+        }
+        else if (hexLength == 6)
+        {
+            return Color4f.fromColor(value, 1f);
+        }
+        else if (hexLength == 4)
+        {
+            int a = ((value >> 12) & 0xF) * 17;
+            int r = ((value >>  8) & 0xF) * 17;
+            int g = ((value >>  4) & 0xF) * 17;
+            int b = ( value        & 0xF) * 17;
+            return Color4f.fromColor(a << 24 | r << 16 | g << 8 | b);
+        }
+        else
+        {
+            int r = ((value >> 8) & 0xF) * 17;
+            int g = ((value >> 4) & 0xF) * 17;
+            int b = ( value       & 0xF) * 17;
+            return Color4f.fromColor(r << 16 | g << 8 | b, 1f);
+        }
+    }
+
+    protected static boolean startsWith(CharSequence text, int start, int end, String prefix)
+    {
+        final int length = prefix.length();
+
+        if (start + length > end)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; ++i)
+        {
+            if (text.charAt(start + i) != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public interface SegmentVisitor
+    {
+        /**
+         * Called for each run of display text that has the same style.
+         * @param text the full input text
+         * @param start the start index of the segment (inclusive)
+         * @param end the end index of the segment (exclusive)
+         * @param style the current style. This is mutable and gets modified as the parsing continues,
+         *              so build a TextStyle from it if it needs to be stored.
+         */
+        void onText(CharSequence text, int start, int end, TextStyle.Builder style);
+
+        /**
+         * Called when a line break is encountered
+         */
+        void onLineBreak();
+    }
+
     public abstract static class Token
     {
         protected final String originalString;
@@ -5,8 +5,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -16,6 +19,7 @@ import net.minecraft.client.resources.IReloadableResourceManager;
 import net.minecraft.client.resources.IResourceManager;
 import net.minecraft.client.resources.IResourceManagerReloadListener;
 
+import malilib.MaLiLibConfigs;
 import malilib.render.RenderContext;
 import malilib.render.ShapeRenderUtils;
 import malilib.render.buffer.VanillaWrappingVertexBuilder;
@@ -35,6 +39,7 @@ public class TextRenderer implements IResourceManagerReloadListener
 
     protected static final Glyph EMPTY_GLYPH = new Glyph(ASCII_TEXTURE, 0, 0, 0, 0, 4, 8, 4, true, ' ');
     protected static final Identifier[] UNICODE_PAGE_LOCATIONS = new Identifier[256];
+    protected static final BakedTextLine NON_BAKEABLE_LINE = new BakedTextLine(null, new int[0], new int[0]);
 
     // This needs to be below the other static fields, because the resource manager reload will access the  other fields!
     public static final TextRenderer INSTANCE = new TextRenderer(ASCII_TEXTURE, false, false);
@@ -43,6 +48,9 @@ public class TextRenderer implements IResourceManagerReloadListener
     protected final VertexBuilder textBuffer = VanillaWrappingVertexBuilder.create(32768, GL11.GL_QUADS, VertexFormats.POSITION_TEX_COLOR);
     protected final VertexBuilder styleBuffer = VanillaWrappingVertexBuilder.create(8192, GL11.GL_QUADS, VertexFormats.POSITION_COLOR);
     protected final Identifier asciiTexture;
+    protected final GlyphAtlas glyphAtlas = new GlyphAtlas();
+    protected final Cache<BakedTextLineKey, BakedTextLine> bakedLineCache = CacheBuilder.newBuilder().concurrencyLevel(1).initialCapacity(1000).maximumSize(4000).expireAfterAccess(10 * 60, TimeUnit.SECONDS).build();
+    protected final BakedTextLineKey bakedLineLookupKey = new BakedTextLineKey(null, 0, false);
 
     protected final Char2ObjectOpenHashMap<Glyph> glyphs = new Char2ObjectOpenHashMap<>();
     protected final HashMap<Pair<Identifier, Integer>, List<Glyph>> glyphsBySize = new HashMap<>();
@@ -53,6 +61,8 @@ public class TextRenderer implements IResourceManagerReloadListener
     @Nullable protected Identifier currentFontTexture;
     protected boolean anaglyph;
     protected boolean unicode;
+    protected boolean useGlyphAtlas;
+    protected int batchDepth;
     protected int fontHeight = 8;
     protected int lineHeight = 10;
     protected int asciiGlyphWidth = 8;
@@ -123,6 +133,8 @@ public class TextRenderer implements IResourceManagerReloadListener
         this.setColorCodes(this.anaglyph);
 
         StyledText.clearCache();
+        this.glyphAtlas.clear();
+        this.bakedLineCache.invalidateAll();
         this.glyphs.clear();
         this.glyphsBySize.clear();
         Arrays.fill(this.charWidth, 0);
@@ -151,7 +163,16 @@ public class TextRenderer implements IResourceManagerReloadListener
 
     public int getRenderWidth(String str)
     {
-        return StyledText.parse(str).getRenderWidth();
+        return StyledTextParser.getRenderWidth(str);
+    }
+
+    /**
+     * @return the render width of the widest line of the given styled text.
+     *         This measures the text directly, without parsing it to a StyledText object.
+     */
+    public int getRenderWidth(CharSequence text)
+    {
+        return StyledTextParser.getRenderWidth(text);
     }
 
     public Glyph getGlyphFor(char c)
@@ -274,22 +295,69 @@ public class TextRenderer implements IResourceManagerReloadListener
             this.onResourceManagerReload(GameWrap.getClient().getResourceManager());
         }
 
+        boolean useGlyphAtlas = MaLiLibConfigs.Generic.TEXT_RENDERER_GLYPH_ATLAS.getBooleanValue();
+
+        // The baked lines have the texture coordinates of one of the texture paths
+        if (useGlyphAtlas != this.useGlyphAtlas)
+        {
+            this.useGlyphAtlas = useGlyphAtlas;
+            this.bakedLineCache.invalidateAll();
+        }
+
         this.textBuffer.start();
         this.styleBuffer.start();
     }
 
     public void renderBuffers()
     {
+        // The buffers will get rendered at the end of the batch
+        if (this.batchDepth > 0)
+        {
+            return;
+        }
+
         this.renderTextBuffer();
         this.renderStyleBuffer();
 
         RenderWrap.enableTexture2D();
     }
 
+    /**
+     * Starts a batch, during which all the rendered text is collected into the
+     * same buffers, and is only drawn once {@link #endBatch()} is called.
+     * With the glyph atlas enabled, this allows drawing all the text in one draw call.
+     * Note: The vertex positions are not transformed until the buffers are drawn,
+     * so this must only be used when all the text is rendered with the same
+     * matrix transformations and render state.
+     */
+    public void startBatch()
+    {
+        if (this.batchDepth++ == 0)
+        {
+            this.startBuffers();
+        }
+    }
+
+    /**
+     * Ends a batch started via {@link #startBatch()}, and draws the collected text
+     */
+    public void endBatch()
+    {
+        if (this.batchDepth > 0 && --this.batchDepth == 0)
+        {
+            this.renderBuffers();
+        }
+    }
+
     protected void renderTextBuffer()
     {
         if (this.currentFontTexture != null)
         {
+            if (this.useGlyphAtlas)
+            {
+                this.glyphAtlas.uploadPendingChanges();
+            }
+
             RenderWrap.bindTexture(this.currentFontTexture);
             this.textBuffer.draw();
         }
@@ -359,11 +427,17 @@ public class TextRenderer implements IResourceManagerReloadListener
     {
         if (this.textBuffer.isStarted())
         {
-            int segmentX = x;
-            Color4f defaultColor4f = Color4f.fromColor(defaultColor);
             RenderWrap.color(1f, 1f, 1f, 1f);
             RenderWrap.setupBlendSeparate();
 
+            if (alphaModifier == null && this.renderBakedLine(x, y, z, defaultColor, shadow, line, ctx))
+            {
+                return;
+            }
+
+            int segmentX = x;
+            Color4f defaultColor4f = Color4f.fromColor(defaultColor);
+
             for (StyledTextSegment segment : line.segments)
             {
                 segmentX += this.renderTextSegment(segmentX, y, z, defaultColor4f, shadow, segment, alphaModifier, ctx);
@@ -371,6 +445,108 @@ public class TextRenderer implements IResourceManagerReloadListener
         }
     }
 
+    /**
+     * Renders the line from the cached, already built vertex data, if the line can be cached.
+     * @return true if the line was rendered, false if the line can't be cached
+     */
+    protected boolean renderBakedLine(int x, int y, float z, int defaultColor,
+                                      boolean shadow, StyledTextLine line, RenderContext ctx)
+    {
+        // Only bake lines on their second use, so that constantly changing
+        // strings don't pay for the baking, or cause cache churn, on every frame
+        if (line.seenByRenderer == false)
+        {
+            line.seenByRenderer = true;
+            return false;
+        }
+
+        BakedTextLineKey lookupKey = this.bakedLineLookupKey;
+        lookupKey.set(line, defaultColor, shadow);
+        BakedTextLine baked = this.bakedLineCache.getIfPresent(lookupKey);
+        lookupKey.set(null, 0, false);
+
+        if (baked == null)
+        {
+            baked = this.bakeLine(defaultColor, shadow, line, ctx);
+            this.bakedLineCache.put(new BakedTextLineKey(line, defaultColor, shadow), baked);
+        }
+
+        if (baked == NON_BAKEABLE_LINE)
+        {
+            return false;
+        }
+
+        if (baked.texture != null)
+        {
+            this.setFontTexture(baked.texture);
+        }
+
+        this.textBuffer.addVertexData(baked.textData, x, y, z);
+        this.styleBuffer.addVertexData(baked.styleData, x, y, z);
+
+        return true;
+    }
+
+    /**
+     * Builds the vertex data for the given line, relative to the origin.
+     * Only lines that use a single texture and don't have the random style can be baked.
+     */
+    protected BakedTextLine bakeLine(int defaultColor, boolean shadow, StyledTextLine line, RenderContext ctx)
+    {
+        Identifier texture = null;
+
+        for (StyledTextSegment segment : line.segments)
+        {
+            if (segment.style.random)
+            {
+                return NON_BAKEABLE_LINE;
+            }
+
+            Identifier segmentTexture = segment.texture;
+
+            for (Glyph glyph : segment.getOriginalGlyphs())
+            {
+                if (this.useGlyphAtlas && glyph != EMPTY_GLYPH)
+                {
+                    segmentTexture = this.glyphAtlas.getAtlasGlyph(glyph).texture;
+                }
+
+                if (texture == null)
+                {
+                    texture = segmentTexture;
+                }
+                else if (texture != segmentTexture)
+                {
+                    return NON_BAKEABLE_LINE;
+                }
+            }
+        }
+
+        if (texture != null)
+        {
+            // This may flush any previous text, so that the baked line won't cause a flush
+            this.setFontTexture(texture);
+        }
+
+        Color4f defaultColor4f = Color4f.fromColor(defaultColor);
+        int textStart = this.textBuffer.getVertexCount();
+        int styleStart = this.styleBuffer.getVertexCount();
+        int segmentX = 0;
+
+        for (StyledTextSegment segment : line.segments)
+        {
+            segmentX += this.renderTextSegment(segmentX, 0, 0f, defaultColor4f, shadow, segment, null, ctx);
+        }
+
+        int[] textData = this.textBuffer.copyVertexData(textStart, this.textBuffer.getVertexCount() - textStart);
+        int[] styleData = this.styleBuffer.copyVertexData(styleStart, this.styleBuffer.getVertexCount() - styleStart);
+
+        this.textBuffer.truncate(textStart);
+        this.styleBuffer.truncate(styleStart);
+
+        return new BakedTextLine(texture, textData, styleData);
+    }
+
     protected int renderTextSegment(int x, int y, float z, Color4f defaultColor,
                                     boolean shadow, StyledTextSegment segment,
                                     @Nullable FloatUnaryOperator alphaModifier, RenderContext ctx)
@@ -383,16 +559,10 @@ public class TextRenderer implements IResourceManagerReloadListener
             color = color.withAlpha(alphaModifier.apply(color.a));
         }
 
-        // Reference equality is fine here, as the sheets are fixed/pre-determined
-        if (this.currentFontTexture != segment.texture)
+        // With the glyph atlas, the texture is selected per glyph in renderGlyph()
+        if (this.useGlyphAtlas == false)
         {
-            if (this.currentFontTexture != null)
-            {
-                this.renderTextBuffer();
-                this.startBuffers();
-            }
-
-            this.currentFontTexture = segment.texture;
+            this.setFontTexture(segment.texture);
         }
 
         if (style.shadow != null)
@@ -416,6 +586,21 @@ public class TextRenderer implements IResourceManagerReloadListener
         return this.renderTextSegmentAndStylesWithColor(x, y, z, color, segment);
     }
 
+    protected void setFontTexture(Identifier texture)
+    {
+        // Reference equality is fine here, as the sheets are fixed/pre-determined
+        if (this.currentFontTexture != texture)
+        {
+            if (this.currentFontTexture != null)
+            {
+                this.renderTextBuffer();
+                this.startBuffers();
+            }
+
+            this.currentFontTexture = texture;
+        }
+    }
+
     protected int renderTextSegmentAndStylesWithColor(float x, float y, float z,
                                                       Color4f color, StyledTextSegment segment)
     {
@@ -463,6 +648,12 @@ public class TextRenderer implements IResourceManagerReloadListener
             return renderWidth;
         }
 
+        if (this.useGlyphAtlas)
+        {
+            glyph = this.glyphAtlas.getAtlasGlyph(glyph);
+            this.setFontTexture(glyph.texture);
+        }
+
         float slant = style.italic ? 1.0F : 0.0F;
         float w = (float) glyph.width;
         float h = (float) glyph.height;
@@ -473,7 +664,7 @@ public class TextRenderer implements IResourceManagerReloadListener
 
         // These weird offsets are for some reason needed in the unicode mode,
         // otherwise the text looks all distorted and broken...
-        if (this.unicode)
+        if (this.unicode && (glyph instanceof GlyphAtlas.AtlasGlyph) == false)
         {
             u2 -= 0.00102F;
             v2 -= 0.00102F;
@@ -496,4 +687,64 @@ public class TextRenderer implements IResourceManagerReloadListener
 
         return renderWidth;
     }
+
+    protected static class BakedTextLine
+    {
+        @Nullable public final Identifier texture;
+        public final int[] textData;
+        public final int[] styleData;
+
+        public BakedTextLine(@Nullable Identifier texture, int[] textData, int[] styleData)
+        {
+            this.texture = texture;
+            this.textData = textData;
+            this.styleData = styleData;
+        }
+    }
+
+    protected static class BakedTextLineKey
+    {
+        protected StyledTextLine line;
+        protected int defaultColor;
+        protected boolean shadow;
+
+        public BakedTextLineKey(StyledTextLine line, int defaultColor, boolean shadow)
+        {
+            this.set(line, defaultColor, shadow);
+        }
+
+        /**
+         * Only for the re-used lookup key, the keys in the cache must not be modified
+         */
+        protected void set(StyledTextLine line, int defaultColor, boolean shadow)
+        {
+            this.line = line;
+            this.defaultColor = defaultColor;
+            this.shadow = shadow;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) { return true; }
+            if (o == null || this.getClass() != o.getClass()) { return false; }
+
+            BakedTextLineKey that = (BakedTextLineKey) o;
+
+            // Identity comparison for the line, as the lines are mostly re-used from the
+            // parse caches, and comparing the segments would cost about as much as re-building
+            return this.line == that.line &&
+                   this.defaultColor == that.defaultColor &&
+                   this.shadow == that.shadow;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(this.line);
+            result = 31 * result + this.defaultColor;
+            result = 31 * result + (this.shadow ? 1 : 0);
+            return result;
+        }
+    }
 }
@@ -200,6 +200,49 @@ public class TextStyle
             this.fromStyle(old);
         }
 
+        public boolean isBold()
+        {
+            return this.bold;
+        }
+
+        public boolean isItalic()
+        {
+            return this.italic;
+        }
+
+        public boolean isUnderline()
+        {
+            return this.underline;
+        }
+
+        public boolean isStrikeThrough()
+        {
+            return this.strikeThrough;
+        }
+
+        public boolean isRandom()
+        {
+            return this.random;
+        }
+
+        @Nullable
+        public Color4f getColor()
+        {
+            return this.color;
+        }
+
+        @Nullable
+        public Color4f getShadowColor()
+        {
+            return this.shadowColor;
+        }
+
+        @Nullable
+        public Boolean getShadow()
+        {
+            return this.shadow;
+        }
+
         public Builder resetAll()
         {
             this.shadowColor = null;
@@ -2,6 +2,7 @@ package malilib.util;
 
 import java.io.BufferedWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -306,12 +307,46 @@ public class FileUtils
                 fileTmp = dir.resolve(UUID.randomUUID() + ".tmp");
             }
 
-            return writeDataToExactFile(fileTmp, dataWriter) && move(fileTmp, file);
+            if (writeDataToExactFile(fileTmp, dataWriter))
+            {
+                return replaceAtomically(fileTmp, file);
+            }
+
+            // Don't leave behind a partially written temp file
+            if (Files.exists(fileTmp))
+            {
+                delete(fileTmp);
+            }
+
+            return false;
         }
 
         return false;
     }
 
+    /**
+     * Moves the source file over the destination file, using an atomic move if the
+     * file system supports it, so that the destination file is never left partially written.
+     * Falls back to a normal replacing move if the atomic move is not supported.
+     */
+    public static boolean replaceAtomically(Path srcFile, Path dstFile)
+    {
+        try
+        {
+            Files.move(srcFile, dstFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            return move(srcFile, dstFile, true);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to move file '{}' to '{}'", srcFile.toAbsolutePath(), dstFile.toAbsolutePath(), e);
+            return false;
+        }
+    }
+
     public static boolean writeDataToExactFile(final Path file, Consumer<BufferedWriter> dataWriter)
     {
         try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
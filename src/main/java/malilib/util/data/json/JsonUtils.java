@@ -27,6 +27,7 @@ import com.google.gson.JsonPrimitive;
 
 import malilib.MaLiLib;
 import malilib.MaLiLibConfigs;
+import malilib.config.value.FileWriteType;
 import malilib.overlay.message.MessageDispatcher;
 import malilib.util.FileUtils;
 import malilib.util.data.BooleanConsumer;
@@ -843,6 +844,16 @@ public class JsonUtils
                                          MaLiLibConfigs.Generic.CONFIG_WRITE_METHOD.getValue());
     }
 
+    /**
+     * Writes the JSON data directly to the file, without first building the whole string in memory.
+     * This doesn't show any in-game messages, so it can also be used from other threads than the client thread.
+     */
+    public static boolean writeJsonToFileStreaming(final JsonElement root, final Path file,
+                                                   final Gson gson, FileWriteType writeType)
+    {
+        return FileUtils.writeDataToFile(file, w -> gson.toJson(root, w), writeType);
+    }
+
     public static void writeJsonToWriter(JsonElement root, Path file, BufferedWriter writer, Gson gson)
     {
         try
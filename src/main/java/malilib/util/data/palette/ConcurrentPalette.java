@@ -0,0 +1,189 @@
+package malilib.util.data.palette;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * A palette that can be shared between threads, for example when one thread
+ * is encoding data into a container while another thread is reading it.
+ * The {@link #getValue(int)} method is wait-free, and {@link #idFor(Object)} is a single
+ * map lookup for existing values. New values are added lock-free: the ID is first claimed
+ * into the ID array using CAS operations, and then published to the value to ID map
+ * with {@code putIfAbsent()}. If two threads add the same new value at the same time,
+ * then the thread that loses the map insert uses the winner's ID, and its own claimed
+ * ID is left holding a duplicate of the value. So a race can waste an ID,
+ * but a value is never returned with two different IDs.
+ * The values must not be null.
+ * <br><br>
+ * The {@link #setMapping(List)} and {@link #overrideMapping(int, Object)} methods are
+ * meant for setting up the palette, and they should not be called while other threads
+ * are using the palette.
+ * <br><br>
+ * When the palette runs out of IDs, the resize handler is called from whichever thread
+ * tried to add the new value. If multiple threads may be adding values at the same time,
+ * then the resize handler also needs to be thread-safe.
+ */
+public class ConcurrentPalette<T> implements Palette<T>
+{
+    protected final PaletteResizeHandler<T> paletteResizer;
+    protected final ConcurrentHashMap<T, Integer> valueToIdMap;
+    protected final AtomicReferenceArray<T> values;
+    protected final AtomicInteger currentSize = new AtomicInteger();
+    protected final int bits;
+    protected final int maxSize;
+
+    public ConcurrentPalette(int bitsIn, PaletteResizeHandler<T> paletteResizer)
+    {
+        this.bits = bitsIn;
+        this.maxSize = 1 << bitsIn;
+        this.valueToIdMap = new ConcurrentHashMap<>();
+        this.values = new AtomicReferenceArray<>(this.maxSize);
+        this.paletteResizer = paletteResizer;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.currentSize.get();
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    @Nullable
+    public T getValue(int id)
+    {
+        return id >= 0 && id < this.maxSize ? this.values.get(id) : null;
+    }
+
+    @Override
+    public int idFor(T value)
+    {
+        Integer id = this.valueToIdMap.get(value);
+
+        if (id != null)
+        {
+            return id;
+        }
+
+        id = this.claimId(value);
+
+        if (id == null)
+        {
+            return this.paletteResizer.onResize(this.bits + 1, value, this);
+        }
+
+        // If another thread added the same value at the same time, then use its ID.
+        // The slot claimed here then just holds an unused duplicate of the value.
+        Integer existingId = this.valueToIdMap.putIfAbsent(value, id);
+
+        return existingId != null ? existingId : id;
+    }
+
+    /**
+     * Claims the next free ID for the value.
+     * @return the claimed ID, or null if the palette is full
+     */
+    @Nullable
+    protected Integer claimId(T value)
+    {
+        final AtomicReferenceArray<T> values = this.values;
+
+        while (true)
+        {
+            int size = this.currentSize.get();
+
+            if (size >= this.maxSize)
+            {
+                return null;
+            }
+
+            if (values.compareAndSet(size, null, value))
+            {
+                this.currentSize.compareAndSet(size, size + 1);
+                return size;
+            }
+
+            // Another thread claimed this slot first, help it advance the size
+            this.currentSize.compareAndSet(size, size + 1);
+        }
+    }
+
+    @Override
+    public List<T> getMapping()
+    {
+        final int size = this.currentSize.get();
+        List<T> list = new ArrayList<>(size);
+
+        for (int id = 0; id < size; ++id)
+        {
+            list.add(this.values.get(id));
+        }
+
+        return list;
+    }
+
+    @Override
+    public boolean setMapping(List<T> list)
+    {
+        final int size = list.size();
+
+        if (size > this.maxSize)
+        {
+            return false;
+        }
+
+        this.valueToIdMap.clear();
+
+        for (int id = 0; id < this.maxSize; ++id)
+        {
+            T val = id < size ? list.get(id) : null;
+            this.values.set(id, val);
+
+            if (val != null)
+            {
+                this.valueToIdMap.putIfAbsent(val, id);
+            }
+        }
+
+        this.currentSize.set(size);
+
+        return true;
+    }
+
+    @Override
+    public boolean overrideMapping(int id, T value)
+    {
+        if (id >= 0 && id < this.currentSize.get())
+        {
+            T oldValue = this.values.getAndSet(id, value);
+
+            if (oldValue != null)
+            {
+                this.valueToIdMap.remove(oldValue, id);
+            }
+
+            this.valueToIdMap.put(value, id);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public ConcurrentPalette<T> copy(PaletteResizeHandler<T> resizeHandler)
+    {
+        ConcurrentPalette<T> copy = new ConcurrentPalette<>(this.bits, resizeHandler);
+        copy.setMapping(this.getMapping());
+        return copy;
+    }
+}
@@ -0,0 +1,169 @@
+package malilib.util.data.palette;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A fixed size array of unsigned integer values, each stored using the given number of bits.
+ * The values are packed tightly into a backing long array, and a value may span
+ * the boundary of two adjacent longs.
+ */
+public class PackedIntArray
+{
+    protected final long[] longArray;
+    protected final int bitsPerEntry;
+    protected final long maxEntryValue;
+    protected final int size;
+
+    public PackedIntArray(int bitsPerEntry, int size)
+    {
+        this(bitsPerEntry, size, null);
+    }
+
+    public PackedIntArray(int bitsPerEntry, int size, long[] existingArray)
+    {
+        Validate.inclusiveBetween(1L, 32L, bitsPerEntry);
+
+        this.size = size;
+        this.bitsPerEntry = bitsPerEntry;
+        this.maxEntryValue = (1L << bitsPerEntry) - 1L;
+
+        if (existingArray != null)
+        {
+            this.longArray = existingArray;
+        }
+        else
+        {
+            this.longArray = new long[getRequiredLongArrayLength(bitsPerEntry, size)];
+        }
+    }
+
+    public int getBitsPerEntry()
+    {
+        return this.bitsPerEntry;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the backing long array. Note that this is not a copy!
+     */
+    public long[] getBackingLongArray()
+    {
+        return this.longArray;
+    }
+
+    public int get(int index)
+    {
+        long startOffset = (long) index * (long) this.bitsPerEntry;
+        int startArrIndex = (int) (startOffset >> 6); // startOffset / 64
+        int endArrIndex = (int) (((long) (index + 1) * (long) this.bitsPerEntry - 1L) >> 6);
+        int startBitOffset = (int) (startOffset & 0x3F); // startOffset % 64
+
+        if (startArrIndex == endArrIndex)
+        {
+            return (int) (this.longArray[startArrIndex] >>> startBitOffset & this.maxEntryValue);
+        }
+        else
+        {
+            int endOffset = 64 - startBitOffset;
+            return (int) ((this.longArray[startArrIndex] >>> startBitOffset | this.longArray[endArrIndex] << endOffset) & this.maxEntryValue);
+        }
+    }
+
+    public void set(int index, int value)
+    {
+        long startOffset = (long) index * (long) this.bitsPerEntry;
+        int startArrIndex = (int) (startOffset >> 6); // startOffset / 64
+        int endArrIndex = (int) (((long) (index + 1) * (long) this.bitsPerEntry - 1L) >> 6);
+        int startBitOffset = (int) (startOffset & 0x3F); // startOffset % 64
+        long[] arr = this.longArray;
+
+        arr[startArrIndex] = arr[startArrIndex] & ~(this.maxEntryValue << startBitOffset) |
+                             ((long) value & this.maxEntryValue) << startBitOffset;
+
+        if (startArrIndex != endArrIndex)
+        {
+            int endOffset = 64 - startBitOffset;
+            int j1 = this.bitsPerEntry - endOffset;
+            arr[endArrIndex] = arr[endArrIndex] >>> j1 << j1 | ((long) value & this.maxEntryValue) >> endOffset;
+        }
+    }
+
+    /**
+     * Reads the values from the range [startIndex, startIndex + length) into the given array
+     */
+    public void getRange(int startIndex, int[] valuesOut, int outOffset, int length)
+    {
+        for (int i = 0; i < length; ++i)
+        {
+            valuesOut[outOffset + i] = this.get(startIndex + i);
+        }
+    }
+
+    /**
+     * Writes the values from the given array into the range [startIndex, startIndex + length)
+     */
+    public void setRange(int startIndex, int[] values, int inOffset, int length)
+    {
+        for (int i = 0; i < length; ++i)
+        {
+            this.set(startIndex + i, values[inOffset + i]);
+        }
+    }
+
+    /**
+     * Sets all entries in this array to the given value
+     */
+    public void fill(int value)
+    {
+        final int size = this.size;
+
+        for (int i = 0; i < size; ++i)
+        {
+            this.set(i, value);
+        }
+    }
+
+    public PackedIntArray copy()
+    {
+        return new PackedIntArray(this.bitsPerEntry, this.size, this.longArray.clone());
+    }
+
+    /**
+     * Creates a copy of this array, using the given new entry width.
+     * The new width must be large enough to hold all the existing values.
+     */
+    public PackedIntArray copyWithBits(int newBitsPerEntry)
+    {
+        if (newBitsPerEntry == this.bitsPerEntry)
+        {
+            return this.copy();
+        }
+
+        PackedIntArray copy = new PackedIntArray(newBitsPerEntry, this.size);
+        final int size = this.size;
+
+        for (int i = 0; i < size; ++i)
+        {
+            copy.set(i, this.get(i));
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the backing array
+     */
+    public long getBackingArraySizeInBytes()
+    {
+        return (long) this.longArray.length * 8L;
+    }
+
+    public static int getRequiredLongArrayLength(int bitsPerEntry, int size)
+    {
+        return (int) Math.ceil(((long) size * (long) bitsPerEntry) / 64.0);
+    }
+}
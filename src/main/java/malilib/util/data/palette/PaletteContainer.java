@@ -0,0 +1,294 @@
+package malilib.util.data.palette;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+import malilib.util.MathUtils;
+
+/**
+ * A fixed size container of values, which stores the palette IDs of the values
+ * in a bit-packed array. The entry width of the array grows as needed
+ * when the palette runs out of IDs.
+ * The ID 0 is always reserved for the default value given in the constructor.
+ */
+public class PaletteContainer<T> implements PaletteResizeHandler<T>
+{
+    public static final int MIN_BITS = 2;
+    public static final int MAX_LINEAR_PALETTE_BITS = 4;
+
+    protected final T defaultValue;
+    protected final int size;
+    protected PackedIntArray storage;
+    protected Palette<T> palette;
+    protected int bits;
+
+    public PaletteContainer(int size, T defaultValue)
+    {
+        this(size, MIN_BITS, defaultValue);
+    }
+
+    public PaletteContainer(int size, int bits, T defaultValue)
+    {
+        this.size = size;
+        this.defaultValue = defaultValue;
+        this.bits = Math.max(MIN_BITS, bits);
+        this.storage = new PackedIntArray(this.bits, size);
+        this.palette = this.createPalette(this.bits);
+        this.palette.idFor(defaultValue);
+    }
+
+    protected PaletteContainer(int size, T defaultValue, PackedIntArray storage, Palette<T> palette)
+    {
+        this.size = size;
+        this.defaultValue = defaultValue;
+        this.bits = storage.getBitsPerEntry();
+        this.storage = storage;
+        this.palette = palette;
+    }
+
+    protected Palette<T> createPalette(int bits)
+    {
+        if (bits <= MAX_LINEAR_PALETTE_BITS)
+        {
+            return new LinearPalette<>(bits, this);
+        }
+
+        return new HashMapPalette<>(bits, this);
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public int getBits()
+    {
+        return this.bits;
+    }
+
+    public T getDefaultValue()
+    {
+        return this.defaultValue;
+    }
+
+    public Palette<T> getPalette()
+    {
+        return this.palette;
+    }
+
+    public PackedIntArray getStorage()
+    {
+        return this.storage;
+    }
+
+    @Override
+    public int onResize(int newSizeBits, T valueBeingAdded, Palette<T> oldPalette)
+    {
+        Palette<T> newPalette = this.createPalette(newSizeBits);
+        newPalette.setMapping(oldPalette.getMapping());
+
+        this.storage = this.storage.copyWithBits(newSizeBits);
+        this.palette = newPalette;
+        this.bits = newSizeBits;
+
+        return newPalette.idFor(valueBeingAdded);
+    }
+
+    public T get(int index)
+    {
+        T value = this.palette.getValue(this.storage.get(index));
+        return value != null ? value : this.defaultValue;
+    }
+
+    public void set(int index, T value)
+    {
+        int id = this.palette.idFor(value);
+        this.storage.set(index, id);
+    }
+
+    /**
+     * Reads all the values of this container into the given array,
+     * which must be at least as large as this container.
+     */
+    public void getAll(T[] valuesOut)
+    {
+        final List<T> mapping = this.palette.getMapping();
+        final int paletteSize = mapping.size();
+        final PackedIntArray storage = this.storage;
+        final int size = this.size;
+
+        for (int i = 0; i < size; ++i)
+        {
+            int id = storage.get(i);
+            valuesOut[i] = id < paletteSize ? mapping.get(id) : this.defaultValue;
+        }
+    }
+
+    /**
+     * Sets all the values of this container from the given array,
+     * which must be at least as large as this container.
+     */
+    public void setAll(T[] values)
+    {
+        final int size = this.size;
+        T lastValue = null;
+        int lastId = -1;
+
+        for (int i = 0; i < size; ++i)
+        {
+            T value = values[i];
+
+            // Runs of the same value are common, so skip the palette lookup for those
+            if (value != lastValue || lastId == -1)
+            {
+                lastId = this.palette.idFor(value);
+                lastValue = value;
+            }
+
+            this.storage.set(i, lastId);
+        }
+    }
+
+    /**
+     * Sets all the entries in the range [startIndex, startIndex + length) to the given value
+     */
+    public void fill(int startIndex, int length, T value)
+    {
+        int id = this.palette.idFor(value);
+        final int end = startIndex + length;
+
+        for (int i = startIndex; i < end; ++i)
+        {
+            this.storage.set(i, id);
+        }
+    }
+
+    /**
+     * Removes all the unused values from the palette, and shrinks the
+     * bit width of the storage array if the remaining palette allows it.
+     * @return true if the palette or the storage was changed
+     */
+    public boolean compact()
+    {
+        final int oldPaletteSize = this.palette.getSize();
+        final PackedIntArray oldStorage = this.storage;
+        final int size = this.size;
+
+        // Nothing to compact, and there is no default value entry to keep either
+        if (oldPaletteSize == 0)
+        {
+            return false;
+        }
+
+        boolean[] used = new boolean[oldPaletteSize];
+        int usedCount = 1;
+
+        // The default value always keeps the ID 0
+        used[0] = true;
+
+        for (int i = 0; i < size; ++i)
+        {
+            int id = oldStorage.get(i);
+
+            if (id < oldPaletteSize && used[id] == false)
+            {
+                used[id] = true;
+                ++usedCount;
+            }
+        }
+
+        int newBits = Math.max(MIN_BITS, MathUtils.log2DeBruijn(usedCount));
+
+        if (usedCount == oldPaletteSize && newBits == this.bits)
+        {
+            return false;
+        }
+
+        List<T> oldMapping = this.palette.getMapping();
+        List<T> newMapping = new ArrayList<>(usedCount);
+        int[] idMap = new int[oldPaletteSize];
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            if (used[id])
+            {
+                idMap[id] = newMapping.size();
+                newMapping.add(oldMapping.get(id));
+            }
+        }
+
+        PackedIntArray newStorage = new PackedIntArray(newBits, size);
+
+        for (int i = 0; i < size; ++i)
+        {
+            int id = oldStorage.get(i);
+            newStorage.set(i, id < oldPaletteSize ? idMap[id] : 0);
+        }
+
+        Palette<T> newPalette = this.createPalette(newBits);
+        newPalette.setMapping(newMapping);
+
+        this.palette = newPalette;
+        this.storage = newStorage;
+        this.bits = newBits;
+
+        return true;
+    }
+
+    public PaletteContainer<T> copy()
+    {
+        PaletteContainer<T> copy = new PaletteContainer<>(this.size, this.defaultValue, this.storage.copy(), null);
+        copy.palette = this.palette.copy(copy);
+        return copy;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the bit-packed storage array
+     */
+    public long getStorageSizeInBytes()
+    {
+        return this.storage.getBackingArraySizeInBytes();
+    }
+
+    /**
+     * Creates a new container from the given palette mapping and bit-packed storage array.
+     * This is meant for reading the container from file.
+     * The bit width is the smallest one that fits the mapping, so the array length must match that exactly.
+     * For containers that were saved with a wider bit width, use {@link #fromData(int, int, Object, List, long[])}.
+     */
+    @Nullable
+    public static <T> PaletteContainer<T> fromData(int size, T defaultValue, List<T> mapping, long[] longArray)
+    {
+        int bits = Math.max(MIN_BITS, MathUtils.log2DeBruijn(mapping.size()));
+        return fromData(size, bits, defaultValue, mapping, longArray);
+    }
+
+    /**
+     * Creates a new container from the given palette mapping and bit-packed storage array,
+     * using the given bit width for the storage array.
+     * This is meant for reading the container from file.
+     * @return the container, or null if the bit width doesn't fit the mapping,
+     *         or if the array length doesn't match the bit width and the size
+     */
+    @Nullable
+    public static <T> PaletteContainer<T> fromData(int size, int bits, T defaultValue, List<T> mapping, long[] longArray)
+    {
+        if (bits < MIN_BITS || bits > 32 ||
+            (bits < 32 && mapping.size() > (1 << bits)) ||
+            longArray.length != PackedIntArray.getRequiredLongArrayLength(bits, size))
+        {
+            return null;
+        }
+
+        PaletteContainer<T> container = new PaletteContainer<>(size, defaultValue, new PackedIntArray(bits, size, longArray), null);
+        container.palette = container.createPalette(bits);
+
+        if (container.palette.setMapping(mapping) == false)
+        {
+            return null;
+        }
+
+        return container;
+    }
+}
@@ -8,6 +8,7 @@ import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
@@ -20,6 +21,8 @@ import malilib.util.FileUtils;
 public class DataDump
 {
     public static final String EMPTY_STRING = "";
+    /** Dumps with at least this many rows are sorted using a parallel sort */
+    public static final int PARALLEL_SORT_THRESHOLD = 8192;
 
     protected final ArrayList<Row> lines = new ArrayList<>();
     protected final ArrayList<String> headers = new ArrayList<>();
@@ -291,19 +294,42 @@ public class DataDump
 
     public List<String> getLines()
     {
-        if (this.sort)
+        this.sortLines();
+
+        return this.format.getRowFormatter(this).getFormattedLines();
+    }
+
+    protected void sortLines()
+    {
+        if (this.sort == false)
         {
-            if (this.sortReverse)
-            {
-                this.lines.sort(Comparator.reverseOrder());
-            }
-            else
-            {
-                this.lines.sort(Row::compareTo);
-            }
+            return;
         }
 
-        return this.format.getRowFormatter(this).getFormattedLines();
+        Comparator<Row> comparator = this.getRowComparator();
+
+        if (this.lines.size() >= PARALLEL_SORT_THRESHOLD)
+        {
+            Row[] rows = this.lines.toArray(new Row[0]);
+            Arrays.parallelSort(rows, comparator);
+            this.lines.clear();
+            Collections.addAll(this.lines, rows);
+        }
+        else
+        {
+            this.lines.sort(comparator);
+        }
+    }
+
+    /**
+     * @return a comparator that sorts the rows by the current sort column and sort direction
+     */
+    protected Comparator<Row> getRowComparator()
+    {
+        final int sortColumn = this.sortColumn;
+        Comparator<Row> comparator = (r1, r2) -> Row.compare(r1, r2, sortColumn);
+
+        return this.sortReverse ? comparator.reversed() : comparator;
     }
 
     @Nullable
@@ -4,22 +4,25 @@ import javax.annotation.Nonnull;
 
 public class Row implements Comparable<Row>
 {
+    protected static final byte TYPE_STRING = 0;
+    protected static final byte TYPE_LONG = 1;
+    protected static final byte TYPE_DOUBLE = 2;
+
     protected final String[] strings;
-    protected final Double[] numbers;
+    /** The parsed numeric values. These are either long values, or the raw bits of double values, based on the type. */
+    protected final long[] numbers;
+    protected final byte[] types;
     protected int sortColumn = -1;
 
     public Row(String[] strings)
     {
         this.strings = strings;
-        this.numbers = new Double[strings.length];
+        this.numbers = new long[strings.length];
+        this.types = new byte[strings.length];
 
         for (int i = 0; i < strings.length; i++)
         {
-            try
-            {
-                this.numbers[i] = Double.parseDouble(strings[i]);
-            }
-            catch (NumberFormatException ignore) {}
+            this.types[i] = parseValue(strings[i], this.numbers, i);
         }
     }
 
@@ -38,65 +41,139 @@ public class Row implements Comparable<Row>
         return this.strings;
     }
 
+    protected double getDouble(int column)
+    {
+        long value = this.numbers[column];
+        return this.types[column] == TYPE_LONG ? (double) value : Double.longBitsToDouble(value);
+    }
+
     @Override
     public int compareTo(@Nonnull Row other)
     {
-        int column = this.sortColumn;
+        return compare(this, other, this.sortColumn);
+    }
+
+    /**
+     * Compares the rows first by the sort column, if any, and then by all the columns in order.
+     * Integer values are compared as longs, other numeric values as doubles,
+     * and everything else as strings.
+     */
+    public static int compare(Row row1, Row row2, int sortColumn)
+    {
+        final int columns = Math.min(row1.strings.length, row2.strings.length);
 
-        if (column >= 0)
+        if (sortColumn >= 0 && sortColumn < columns)
         {
-            if (this.numbers[column] != null && other.numbers[column] != null)
+            int res = compareColumn(row1, row2, sortColumn);
+
+            if (res != 0)
             {
-                double d1 = this.numbers[column];
-                double d2 = other.numbers[column];
-
-                if (d1 < d2)
-                {
-                    return -1;
-                }
-                else if (d1 > d2)
-                {
-                    return 1;
-                }
+                return res;
             }
-            else
-            {
-                int res = this.strings[column].compareTo(other.strings[column]);
+        }
+
+        for (int i = 0; i < columns; i++)
+        {
+            int res = compareColumn(row1, row2, i);
 
-                if (res != 0)
-                {
-                    return res;
-                }
+            if (res != 0)
+            {
+                return res;
             }
         }
 
-        for (int i = 0; i < this.strings.length; i++)
+        return 0;
+    }
+
+    protected static int compareColumn(Row row1, Row row2, int column)
+    {
+        byte type1 = row1.types[column];
+        byte type2 = row2.types[column];
+
+        if (type1 == TYPE_LONG && type2 == TYPE_LONG)
+        {
+            return Long.compare(row1.numbers[column], row2.numbers[column]);
+        }
+        else if (type1 != TYPE_STRING && type2 != TYPE_STRING)
         {
-            if (this.numbers[i] != null && other.numbers[i] != null)
+            double d1 = row1.getDouble(column);
+            double d2 = row2.getDouble(column);
+
+            if (d1 < d2)
             {
-                double d1 = this.numbers[i];
-                double d2 = other.numbers[i];
-
-                if (d1 < d2)
-                {
-                    return -1;
-                }
-                else if (d1 > d2)
-                {
-                    return 1;
-                }
+                return -1;
             }
-            else
+            else if (d1 > d2)
             {
-                int res = this.strings[i].compareTo(other.strings[i]);
+                return 1;
+            }
+
+            return 0;
+        }
+
+        return row1.strings[column].compareTo(row2.strings[column]);
+    }
 
-                if (res != 0)
-                {
-                    return res;
-                }
+    /**
+     * Parses the numeric value of the string, if any, into the array
+     * @return the type of the value
+     */
+    protected static byte parseValue(String str, long[] numbers, int index)
+    {
+        final int length = str.length();
+
+        if (length == 0)
+        {
+            return TYPE_STRING;
+        }
+
+        char first = str.charAt(0);
+
+        // Quick check to skip the parse attempt (and the exception) for most non-numeric strings.
+        // Double.parseDouble() also accepts leading whitespace and "NaN" and "Infinity".
+        if ((first >= '0' && first <= '9') == false && "+-.NI \t".indexOf(first) < 0)
+        {
+            return TYPE_STRING;
+        }
+
+        // Plain integers with up to 18 digits always fit in a long
+        if (length <= 19 && isInteger(str))
+        {
+            numbers[index] = Long.parseLong(str);
+            return TYPE_LONG;
+        }
+
+        try
+        {
+            numbers[index] = Double.doubleToRawLongBits(Double.parseDouble(str));
+            return TYPE_DOUBLE;
+        }
+        catch (NumberFormatException ignore)
+        {
+            return TYPE_STRING;
+        }
+    }
+
+    protected static boolean isInteger(String str)
+    {
+        final int length = str.length();
+        int start = str.charAt(0) == '-' || str.charAt(0) == '+' ? 1 : 0;
+
+        if (length == start || length - start > 18)
+        {
+            return false;
+        }
+
+        for (int i = start; i < length; ++i)
+        {
+            char c = str.charAt(i);
+
+            if (c < '0' || c > '9')
+            {
+                return false;
             }
         }
 
-        return 0;
+        return true;
     }
 }
@@ -20,13 +20,29 @@ public abstract class RowFormatterBase
     {
         ArrayList<String> linesOut = new ArrayList<>();
 
+        this.addLeadingLines(linesOut);
+        this.addDataRows(this.dump.lines, linesOut);
+        this.addTrailingLines(linesOut);
+
+        return linesOut;
+    }
+
+    /**
+     * Adds the lines that come before the data rows, so the headers and the title
+     */
+    public void addLeadingLines(List<String> linesOut)
+    {
         this.addHeaders(this.dump.headers, linesOut);
         this.addTopTitle(this.dump.title, linesOut);
-        this.addDataRows(this.dump.lines, linesOut);
+    }
+
+    /**
+     * Adds the lines that come after the data rows, so the bottom title and the footers
+     */
+    public void addTrailingLines(List<String> linesOut)
+    {
         this.addBottomTitle(this.dump.title, linesOut);
         this.addFooters(this.dump.footers, linesOut);
-
-        return linesOut;
     }
 
     public void addHeaders(List<String> headers, List<String> linesOut)
@@ -0,0 +1,540 @@
+package malilib.util.datadump;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+
+import malilib.MaLiLib;
+import malilib.util.FileUtils;
+
+/**
+ * A DataDump that writes its output directly to a file, instead of keeping
+ * all the rows in memory and then returning all the formatted lines at once.
+ * <br><br>
+ * If the rows don't need to be sorted (note that sorting is enabled by default),
+ * and the format doesn't need to know the column widths up front (so any format
+ * other than {@link Format#ASCII}), then each row is written to the file as soon as it's added.
+ * In that case the title and the headers need to be added before the first data row.
+ * <br><br>
+ * Otherwise the rows are collected in chunks of up to {@link #setMaxRowsInMemory(int)} rows.
+ * The full chunks are sorted (if sorting is enabled) and spilled to temporary files,
+ * while the column widths get updated as the rows are added. Then {@link #finish()}
+ * reads the chunks back in a second pass, doing a merge of the sorted chunks,
+ * and writes the formatted rows to the file.
+ * <br><br>
+ * The format and the sort options need to be set before adding any data.
+ * Call {@link #finish()} after all the data has been added. Closing the dump without
+ * finishing it discards the output, so the dump can be used in a try-with-resources block.
+ * <br><br>
+ * {@link #getLines()} still works like in a normal DataDump, but it has to finish the dump
+ * and then read the whole output file back into memory, so it should be avoided for large dumps.
+ */
+public class StreamingDataDump extends DataDump implements Closeable
+{
+    public static final int DEFAULT_MAX_ROWS_IN_MEMORY = 65536;
+    protected static final int MAX_MERGE_INPUTS = 64;
+
+    protected final Path outputFile;
+    protected final List<SpillFile> spillFiles = new ArrayList<>();
+    @Nullable protected BufferedWriter writer;
+    @Nullable protected RowFormatterBase directFormatter;
+    protected int maxRowsInMemory = DEFAULT_MAX_ROWS_IN_MEMORY;
+    protected long rowCount;
+    protected boolean started;
+    protected boolean finished;
+    protected boolean failed;
+
+    public StreamingDataDump(int columns, Format format, Path outputFile)
+    {
+        super(columns, format);
+
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Creates a dump that will write to a new timestamped file in the given directory
+     * @return the dump, or null if the directory or the file could not be created
+     */
+    @Nullable
+    public static StreamingDataDump createTimestamped(Path outputDir, String fileNameBase, int columns, Format format)
+    {
+        if (FileUtils.createDirectoriesIfMissing(outputDir) == false)
+        {
+            MaLiLib.LOGGER.error("StreamingDataDump: Failed to create the dump output directory '{}'", outputDir);
+            return null;
+        }
+
+        String extension = format == Format.CSV ? ".csv" : ".txt";
+        Path outFile = getAvailableTimestampedFileName(outputDir, fileNameBase, extension);
+
+        return outFile != null ? new StreamingDataDump(columns, format, outFile) : null;
+    }
+
+    public Path getOutputFile()
+    {
+        return this.outputFile;
+    }
+
+    /**
+     * @return the number of data rows added so far
+     */
+    public long getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Sets the number of rows that are kept in memory before they get spilled to a temporary file
+     */
+    public StreamingDataDump setMaxRowsInMemory(int maxRows)
+    {
+        this.maxRowsInMemory = Math.max(maxRows, 1);
+        return this;
+    }
+
+    @Override
+    public void addData(String... data)
+    {
+        if (this.finished)
+        {
+            throw new IllegalStateException("addData(): The dump has already been finished");
+        }
+
+        if (this.updateMaxColumnLengths(data) == false || this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.started == false)
+            {
+                this.start();
+            }
+
+            Row row = new Row(data, this.sortColumn);
+            ++this.rowCount;
+
+            if (this.directFormatter != null)
+            {
+                this.writeLine(this.directFormatter.getFormattedData(row));
+            }
+            else
+            {
+                this.lines.add(row);
+
+                if (this.lines.size() >= this.maxRowsInMemory)
+                {
+                    this.spillRows();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            this.onWriteFailed(e);
+        }
+    }
+
+    /**
+     * The rows of this dump are not kept in memory, so this finishes the dump
+     * if it hasn't been finished yet, and then reads the lines back from the output file.
+     * This is only meant for compatibility with the code that handles any DataDump,
+     * as it needs to have all the lines in memory at once.
+     * @return the lines of the output file, or an empty list if the dump failed or was discarded
+     */
+    @Override
+    public List<String> getLines()
+    {
+        // If the dump was closed without finishing it, then the output was discarded and this returns false
+        if (this.finish() == false || Files.isRegularFile(this.outputFile) == false)
+        {
+            return new ArrayList<>();
+        }
+
+        try
+        {
+            return Files.readAllLines(this.outputFile, StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            MaLiLib.LOGGER.warn("StreamingDataDump: Failed to read back the output file '{}'", this.outputFile.toAbsolutePath(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Writes the rest of the output and closes the file.
+     * @return true if the whole dump was written successfully
+     */
+    public boolean finish()
+    {
+        if (this.finished)
+        {
+            return this.failed == false;
+        }
+
+        try
+        {
+            if (this.failed == false)
+            {
+                this.writeRemainingLines();
+            }
+        }
+        catch (IOException e)
+        {
+            this.onWriteFailed(e);
+        }
+
+        this.finished = true;
+        this.close();
+
+        if (this.failed == false)
+        {
+            MaLiLib.debugLog("StreamingDataDump: Wrote {} rows to '{}'", this.rowCount, this.outputFile.toAbsolutePath());
+        }
+
+        return this.failed == false;
+    }
+
+    /**
+     * Closes the output file and deletes the temporary files.
+     * If the dump has not been finished, then the incomplete output file is deleted.
+     */
+    @Override
+    public void close()
+    {
+        if (this.writer != null)
+        {
+            try
+            {
+                this.writer.close();
+            }
+            catch (IOException e)
+            {
+                this.onWriteFailed(e);
+            }
+
+            this.writer = null;
+        }
+
+        for (SpillFile file : this.spillFiles)
+        {
+            FileUtils.delete(file.path);
+        }
+
+        this.spillFiles.clear();
+        this.lines.clear();
+
+        if (this.finished == false)
+        {
+            this.finished = true;
+            this.failed = true;
+
+            if (Files.exists(this.outputFile))
+            {
+                FileUtils.delete(this.outputFile);
+            }
+        }
+    }
+
+    protected void start() throws IOException
+    {
+        this.started = true;
+
+        // Only the ASCII table needs to know the final column widths before writing anything
+        if (this.sort == false && this.format != Format.ASCII)
+        {
+            this.directFormatter = this.format.getRowFormatter(this);
+            List<String> lines = new ArrayList<>();
+            this.directFormatter.addLeadingLines(lines);
+            this.writeLines(lines);
+        }
+    }
+
+    protected void writeRemainingLines() throws IOException
+    {
+        if (this.started == false)
+        {
+            this.start();
+        }
+
+        List<String> lines = new ArrayList<>();
+
+        if (this.directFormatter != null)
+        {
+            this.directFormatter.addTrailingLines(lines);
+            this.writeLines(lines);
+            return;
+        }
+
+        RowFormatterBase formatter = this.format.getRowFormatter(this);
+        formatter.addLeadingLines(lines);
+        this.writeLines(lines);
+
+        if (this.spillFiles.isEmpty())
+        {
+            this.sortLines();
+
+            for (Row row : this.lines)
+            {
+                this.writeLine(formatter.getFormattedData(row));
+            }
+        }
+        else
+        {
+            if (this.lines.isEmpty() == false)
+            {
+                this.spillRows();
+            }
+
+            this.writeSpilledRows((row) -> this.writeLine(formatter.getFormattedData(row)));
+        }
+
+        lines.clear();
+        formatter.addTrailingLines(lines);
+        this.writeLines(lines);
+    }
+
+    protected void writeSpilledRows(RowSink sink) throws IOException
+    {
+        List<SpillFile> files = new ArrayList<>(this.spillFiles);
+
+        if (this.sort == false)
+        {
+            for (SpillFile file : files)
+            {
+                try (SpillReader reader = new SpillReader(file, this.sortColumn))
+                {
+                    while (reader.advance())
+                    {
+                        sink.accept(reader.current);
+                    }
+                }
+            }
+
+            return;
+        }
+
+        Comparator<Row> comparator = this.getRowComparator();
+
+        // Limit the number of files open at once by merging them in multiple passes
+        while (files.size() > MAX_MERGE_INPUTS)
+        {
+            List<SpillFile> mergedFiles = new ArrayList<>();
+
+            for (int start = 0; start < files.size(); start += MAX_MERGE_INPUTS)
+            {
+                List<SpillFile> group = files.subList(start, Math.min(start + MAX_MERGE_INPUTS, files.size()));
+                mergedFiles.add(this.mergeToSpillFile(group, comparator));
+            }
+
+            files = mergedFiles;
+        }
+
+        this.mergeRows(files, comparator, sink);
+    }
+
+    protected SpillFile mergeToSpillFile(List<SpillFile> files, Comparator<Row> comparator) throws IOException
+    {
+        SpillFile file = this.createSpillFile();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.path))))
+        {
+            this.mergeRows(files, comparator, (row) -> {
+                writeRow(row, out);
+                ++file.rowCount;
+            });
+        }
+
+        return file;
+    }
+
+    protected void mergeRows(List<SpillFile> files, Comparator<Row> comparator, RowSink sink) throws IOException
+    {
+        List<SpillReader> readers = new ArrayList<>();
+        PriorityQueue<SpillReader> queue = new PriorityQueue<>(files.size(), (r1, r2) -> comparator.compare(r1.current, r2.current));
+
+        try
+        {
+            for (SpillFile file : files)
+            {
+                SpillReader reader = new SpillReader(file, this.sortColumn);
+                readers.add(reader);
+
+                if (reader.advance())
+                {
+                    queue.add(reader);
+                }
+            }
+
+            while (queue.isEmpty() == false)
+            {
+                SpillReader reader = queue.poll();
+                sink.accept(reader.current);
+
+                if (reader.advance())
+                {
+                    queue.add(reader);
+                }
+            }
+        }
+        finally
+        {
+            for (SpillReader reader : readers)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Sorts the rows currently in memory (if sorting is enabled) and writes them to a new temporary file
+     */
+    protected void spillRows() throws IOException
+    {
+        this.sortLines();
+
+        SpillFile file = this.createSpillFile();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.path))))
+        {
+            for (Row row : this.lines)
+            {
+                writeRow(row, out);
+            }
+        }
+
+        file.rowCount = this.lines.size();
+        this.lines.clear();
+    }
+
+    protected SpillFile createSpillFile() throws IOException
+    {
+        SpillFile file = new SpillFile(Files.createTempFile("malilib_datadump_", ".tmp"));
+        this.spillFiles.add(file);
+        return file;
+    }
+
+    protected void writeLines(List<String> lines) throws IOException
+    {
+        for (String line : lines)
+        {
+            this.writeLine(line);
+        }
+    }
+
+    protected void writeLine(String line) throws IOException
+    {
+        if (this.writer == null)
+        {
+            this.writer = Files.newBufferedWriter(this.outputFile, StandardCharsets.UTF_8);
+        }
+
+        this.writer.write(line);
+        this.writer.newLine();
+    }
+
+    protected void onWriteFailed(IOException e)
+    {
+        if (this.failed == false)
+        {
+            MaLiLib.LOGGER.error("StreamingDataDump: Exception while writing data dump to file '{}'",
+                                 this.outputFile.getFileName(), e);
+        }
+
+        this.failed = true;
+    }
+
+    protected static void writeRow(Row row, DataOutputStream out) throws IOException
+    {
+        String[] values = row.getValues();
+        out.writeInt(values.length);
+
+        for (String value : values)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static Row readRow(DataInputStream in, int sortColumn) throws IOException
+    {
+        String[] values = new String[in.readInt()];
+
+        for (int i = 0; i < values.length; ++i)
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return new Row(values, sortColumn);
+    }
+
+    protected interface RowSink
+    {
+        void accept(Row row) throws IOException;
+    }
+
+    protected static class SpillFile
+    {
+        public final Path path;
+        public long rowCount;
+
+        public SpillFile(Path path)
+        {
+            this.path = path;
+        }
+    }
+
+    protected static class SpillReader implements Closeable
+    {
+        protected final DataInputStream in;
+        protected final int sortColumn;
+        protected long remainingRows;
+        protected Row current;
+
+        public SpillReader(SpillFile file, int sortColumn) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.path)));
+            this.sortColumn = sortColumn;
+            this.remainingRows = file.rowCount;
+        }
+
+        /**
+         * Reads the next row into {@link #current}
+         * @return false if there are no more rows
+         */
+        public boolean advance() throws IOException
+        {
+            if (this.remainingRows <= 0)
+            {
+                return false;
+            }
+
+            this.current = readRow(this.in, this.sortColumn);
+            --this.remainingRows;
+
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.in.close();
+        }
+    }
+}
@@ -3,9 +3,12 @@ package malilib.util.game.wrap;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import org.lwjgl.opengl.ARBVertexBufferObject;
+import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
 
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
@@ -22,6 +25,9 @@ public class RenderWrap
     public static final int DEFAULT_TEX_UNIT = GL13.GL_TEXTURE0;
     public static final int LIGHTMAP_TEX_UNIT = GL13.GL_TEXTURE1;
 
+    /** Whether the buffer functions need to use the ARB extension, same as in {@link OpenGlHelper} */
+    private static Boolean arbVboCached;
+
     /*
     private static final FloatBuffer COLOR_BUFFER = createDirectFloatBuffer(4);
     private static final Vec3f LIGHT0_POS = Vec3f.normalized( 0.2F, 1.0F, -0.7F);
@@ -430,6 +436,34 @@ public class RenderWrap
         OpenGlHelper.glBufferData(target, data, usage);
     }
 
+    /**
+     * Allocates (or orphans and re-allocates) the storage of the currently bound buffer,
+     * without uploading any data to it
+     */
+    public static void bufferData(int target, long size, int usage)
+    {
+        if (useArbVbo())
+        {
+            ARBVertexBufferObject.glBufferDataARB(target, size, usage);
+        }
+        else
+        {
+            GL15.glBufferData(target, size, usage);
+        }
+    }
+
+    public static void bufferSubData(int target, long offset, ByteBuffer data)
+    {
+        if (useArbVbo())
+        {
+            ARBVertexBufferObject.glBufferSubDataARB(target, offset, data);
+        }
+        else
+        {
+            GL15.glBufferSubData(target, offset, data);
+        }
+    }
+
     public static void glDeleteBuffers(int buffer)
     {
         OpenGlHelper.glDeleteBuffers(buffer);
@@ -445,6 +479,17 @@ public class RenderWrap
         return OpenGlHelper.glGenBuffers();
     }
 
+    private static boolean useArbVbo()
+    {
+        if (arbVboCached == null)
+        {
+            ContextCapabilities capabilities = GLContext.getCapabilities();
+            arbVboCached = capabilities.OpenGL15 == false && capabilities.GL_ARB_vertex_buffer_object;
+        }
+
+        return arbVboCached;
+    }
+
     private static synchronized ByteBuffer createDirectByteBuffer(int capacity)
     {
         return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
@@ -0,0 +1,206 @@
+package malilib.util.inventory;
+
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+
+import malilib.util.data.ItemType;
+import malilib.util.game.wrap.ItemWrap;
+
+/**
+ * An incrementally updated index of the item counts in an inventory,
+ * including the contents of any Shulker Boxes (or other storage items with the same
+ * NBT data structure), like {@link InventoryUtils#getInventoryItemCounts(InventoryView)}.
+ * <br><br>
+ * The inventory views don't have any change events, so {@link #update()} checks each slot
+ * for a different stack instance, count, damage or NBT tag instance, and only recounts
+ * the slots that have changed. So the item hashes only need to be calculated for the
+ * changed slots, and the counts can then be queried without rescanning the inventory.
+ * Changes made to the NBT data of a stack in place are not detected,
+ * use {@link #markSlotChanged(int)} or {@link #markAllChanged()} for those.
+ */
+public class InventoryItemCountIndex
+{
+    protected final InventoryView inventory;
+    protected final Object2IntOpenHashMap<ItemType> counts = new Object2IntOpenHashMap<>();
+    protected SlotState[] slots = new SlotState[0];
+
+    public InventoryItemCountIndex(InventoryView inventory)
+    {
+        this.inventory = inventory;
+    }
+
+    public InventoryView getInventory()
+    {
+        return this.inventory;
+    }
+
+    /**
+     * Recounts the slots that have changed since the last update
+     * @return the number of changed slots
+     */
+    public int update()
+    {
+        final int size = this.inventory.getSize();
+        int changedSlots = 0;
+
+        if (size != this.slots.length)
+        {
+            this.resize(size);
+        }
+
+        for (int slot = 0; slot < size; ++slot)
+        {
+            ItemStack stack = this.inventory.getStack(slot);
+            SlotState state = this.slots[slot];
+
+            if (state.matches(stack) == false)
+            {
+                this.removeSlotCounts(state);
+                this.addSlotCounts(state, stack);
+                ++changedSlots;
+            }
+        }
+
+        return changedSlots;
+    }
+
+    /**
+     * Marks the slot to be recounted on the next update
+     */
+    public void markSlotChanged(int slot)
+    {
+        if (slot >= 0 && slot < this.slots.length)
+        {
+            this.slots[slot].stack = null;
+        }
+    }
+
+    /**
+     * Marks all the slots to be recounted on the next update
+     */
+    public void markAllChanged()
+    {
+        for (SlotState state : this.slots)
+        {
+            state.stack = null;
+        }
+    }
+
+    /**
+     * @return the count of the given item type, as of the last update
+     */
+    public int getCount(ItemType type)
+    {
+        return this.counts.getInt(type);
+    }
+
+    /**
+     * @return the count of items matching the given stack (including the NBT data), as of the last update
+     */
+    public int getCount(ItemStack stack)
+    {
+        return this.counts.getInt(new ItemType(stack, false, true));
+    }
+
+    /**
+     * @return the item counts, as of the last update. The returned map must not be modified.
+     */
+    public Object2IntOpenHashMap<ItemType> getCounts()
+    {
+        return this.counts;
+    }
+
+    protected void resize(int size)
+    {
+        this.slots = new SlotState[size];
+        this.counts.clear();
+
+        for (int i = 0; i < size; ++i)
+        {
+            this.slots[i] = new SlotState();
+        }
+    }
+
+    protected void addSlotCounts(SlotState state, ItemStack stack)
+    {
+        state.stack = stack;
+        state.count = stack.getCount();
+        state.metadata = stack.getMetadata();
+        state.tag = ItemWrap.getTag(stack);
+
+        if (ItemWrap.isEmpty(stack))
+        {
+            return;
+        }
+
+        // Copy the stack, so that in-place changes to the inventory's stack don't break the map keys
+        state.type = new ItemType(stack, true, true);
+        this.counts.addTo(state.type, state.count);
+
+        if (StorageItemInventoryUtils.shulkerBoxHasItems(stack))
+        {
+            StoredItemsCache.StoredItems items = StoredItemsCache.INSTANCE.getStoredItems(stack);
+
+            if (items != null)
+            {
+                state.storedItemCounts = items.getItemCounts();
+
+                for (Object2IntMap.Entry<ItemType> entry : state.storedItemCounts.object2IntEntrySet())
+                {
+                    this.counts.addTo(entry.getKey(), entry.getIntValue());
+                }
+            }
+        }
+    }
+
+    protected void removeSlotCounts(SlotState state)
+    {
+        if (state.type != null)
+        {
+            this.decrement(state.type, state.count);
+            state.type = null;
+        }
+
+        if (state.storedItemCounts != null)
+        {
+            for (Object2IntMap.Entry<ItemType> entry : state.storedItemCounts.object2IntEntrySet())
+            {
+                this.decrement(entry.getKey(), entry.getIntValue());
+            }
+
+            state.storedItemCounts = null;
+        }
+    }
+
+    protected void decrement(ItemType type, int count)
+    {
+        if (this.counts.addTo(type, -count) <= count)
+        {
+            this.counts.removeInt(type);
+        }
+    }
+
+    protected static class SlotState
+    {
+        /** The stack that was counted for this slot, or null if the slot needs to be recounted */
+        @Nullable protected ItemStack stack;
+        @Nullable protected NBTTagCompound tag;
+        @Nullable protected ItemType type;
+        /** The counts of the stored items, if the stack is a storage item. These are shared from the {@link StoredItemsCache}. */
+        @Nullable protected Object2IntOpenHashMap<ItemType> storedItemCounts;
+        protected int count;
+        protected int metadata;
+
+        public boolean matches(ItemStack stack)
+        {
+            return stack == this.stack &&
+                   stack.getCount() == this.count &&
+                   stack.getMetadata() == this.metadata &&
+                   ItemWrap.getTag(stack) == this.tag;
+        }
+    }
+}
@@ -436,6 +436,7 @@ public class InventoryUtils
      * Returns a map of the stored item counts in the given inventory.
      * This also counts the contents of any Shulker Boxes
      * (or other storage item with the same NBT data structure).
+     * For repeatedly counting the same inventory, see {@link InventoryItemCountIndex}.
      */
     public static Object2IntOpenHashMap<ItemType> getInventoryItemCounts(InventoryView inv)
     {
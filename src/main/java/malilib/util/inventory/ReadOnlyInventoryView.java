@@ -0,0 +1,29 @@
+package malilib.util.inventory;
+
+import net.minecraft.item.ItemStack;
+
+/**
+ * A view that only exposes the {@link InventoryView} methods of the wrapped inventory,
+ * so that a shared inventory can't be modified by casting it to its implementation class.
+ */
+public class ReadOnlyInventoryView implements InventoryView
+{
+    protected final InventoryView inventory;
+
+    public ReadOnlyInventoryView(InventoryView inventory)
+    {
+        this.inventory = inventory;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.inventory.getSize();
+    }
+
+    @Override
+    public ItemStack getStack(int slot)
+    {
+        return this.inventory.getStack(slot);
+    }
+}
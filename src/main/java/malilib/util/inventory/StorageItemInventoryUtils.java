@@ -1,5 +1,7 @@
 package malilib.util.inventory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.apache.commons.lang3.tuple.Pair;
@@ -47,16 +49,13 @@ public class StorageItemInventoryUtils
                                                     ItemStack itemToFind,
                                                     boolean ignoreNbt)
     {
-        DefaultedList<ItemStack> items = getNonEmptyStoredItems(shulkerBoxStack);
+        List<ItemStack> items = getCachedNonEmptyStoredItems(shulkerBoxStack);
 
-        if (items.size() > 0)
+        for (ItemStack item : items)
         {
-            for (ItemStack item : items)
+            if (InventoryUtils.areStacksEqual(item, itemToFind, ignoreNbt))
             {
-                if (InventoryUtils.areStacksEqual(item, itemToFind, ignoreNbt))
-                {
-                    return true;
-                }
+                return true;
             }
         }
 
@@ -81,6 +80,8 @@ public class StorageItemInventoryUtils
      * Returns the list of items currently stored in the given Shulker Box
      * (or other storage item with the same NBT data structure).
      * Does not keep empty slots.
+     * The items are decoded on each call, see {@link #getCachedNonEmptyStoredItems(ItemStack)}
+     * for read-only uses.
      */
     public static DefaultedList<ItemStack> getNonEmptyStoredItems(ItemStack stackIn)
     {
@@ -113,6 +114,19 @@ public class StorageItemInventoryUtils
         return DefaultedList.empty();
     }
 
+    /**
+     * Returns the list of items currently stored in the given Shulker Box
+     * (or other storage item with the same NBT data structure).
+     * Does not keep empty slots.
+     * The items are cached in the {@link StoredItemsCache}, and the returned list
+     * and the item stacks in it must not be modified.
+     */
+    public static List<ItemStack> getCachedNonEmptyStoredItems(ItemStack stackIn)
+    {
+        StoredItemsCache.StoredItems items = StoredItemsCache.INSTANCE.getStoredItems(stackIn);
+        return items != null ? items.getNonEmptyItems() : Collections.emptyList();
+    }
+
     public static void readStoredItems(ItemStack containerStack, Consumer<Pair<Integer, ItemStack>> consumer)
     {
         NBTTagCompound nbt = ItemWrap.getTag(containerStack);
@@ -147,10 +161,14 @@ public class StorageItemInventoryUtils
      */
     public static Object2IntOpenHashMap<ItemType> getStoredItemCounts(ItemStack stackIn)
     {
-        DefaultedList<ItemStack> items = getNonEmptyStoredItems(stackIn);
-        return InventoryUtils.getInventoryItemCounts(new ListBackedInventoryView(items));
+        StoredItemsCache.StoredItems items = StoredItemsCache.INSTANCE.getStoredItems(stackIn);
+        return items != null ? new Object2IntOpenHashMap<>(items.getItemCounts()) : new Object2IntOpenHashMap<>();
     }
 
+    /**
+     * The items are decoded on each call, see {@link #getCachedExactStoredItemsView(ItemStack)}
+     * for read-only uses.
+     */
     public static InventoryView getExactStoredItemsView(ItemStack stackIn)
     {
         ListBackedInventoryView inv = new ListBackedInventoryView();
@@ -158,10 +176,34 @@ public class StorageItemInventoryUtils
         return inv;
     }
 
+    /**
+     * The items are decoded on each call, see {@link #getCachedNonEmptyStoredItemsView(ItemStack)}
+     * for read-only uses.
+     */
     public static InventoryView getNonEmptyStoredItemsView(ItemStack stackIn)
     {
         ListBackedInventoryView inv = new ListBackedInventoryView();
         readStoredItems(stackIn, (pair) -> inv.addStack(pair.getValue()));
         return inv;
     }
+
+    /**
+     * Returns a read-only view of the stored items in their stored slots.
+     * The view is cached in the {@link StoredItemsCache}, and the item stacks in it must not be modified.
+     */
+    public static InventoryView getCachedExactStoredItemsView(ItemStack stackIn)
+    {
+        StoredItemsCache.StoredItems items = StoredItemsCache.INSTANCE.getStoredItems(stackIn);
+        return items != null ? items.getExactView() : new ListBackedInventoryView();
+    }
+
+    /**
+     * Returns a read-only view of the stored items, without any empty slots in between.
+     * The view is cached in the {@link StoredItemsCache}, and the item stacks in it must not be modified.
+     */
+    public static InventoryView getCachedNonEmptyStoredItemsView(ItemStack stackIn)
+    {
+        StoredItemsCache.StoredItems items = StoredItemsCache.INSTANCE.getStoredItems(stackIn);
+        return items != null ? items.getNonEmptyView() : new ListBackedInventoryView();
+    }
 }
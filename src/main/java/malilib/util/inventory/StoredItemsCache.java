@@ -0,0 +1,192 @@
+package malilib.util.inventory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+
+import malilib.util.data.ItemType;
+import malilib.util.game.wrap.ItemWrap;
+import malilib.util.game.wrap.NbtWrap;
+
+/**
+ * A cache of the decoded contents of Shulker Boxes (or other storage items
+ * with the same NBT data structure), so that the inventory previews and
+ * the item searches don't need to decode the stored items every frame.
+ * <br><br>
+ * The entries are keyed by the identity of the <b>BlockEntityTag.Items</b> list tag,
+ * and they are only used if the hash code of the list tag hasn't changed.
+ * The list tags are weakly referenced, so the cache doesn't keep the item data alive,
+ * and the number of entries is also capped.
+ * <br><br>
+ * The cached item stacks are shared, so they must not be modified.
+ */
+public class StoredItemsCache
+{
+    public static final StoredItemsCache INSTANCE = new StoredItemsCache(512);
+
+    protected final Cache<NBTTagList, StoredItems> cache;
+
+    public StoredItemsCache(int maxEntries)
+    {
+        this.cache = CacheBuilder.newBuilder().weakKeys().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * @return the decoded contents of the given storage item, or null if it doesn't have any stored items data
+     */
+    @Nullable
+    public StoredItems getStoredItems(ItemStack containerStack)
+    {
+        NBTTagList tagList = getStoredItemsTag(containerStack);
+
+        if (tagList == null)
+        {
+            return null;
+        }
+
+        int hash = tagList.hashCode();
+        StoredItems items = this.cache.getIfPresent(tagList);
+
+        if (items == null || items.hash != hash)
+        {
+            items = new StoredItems(tagList, hash);
+            this.cache.put(tagList, items);
+        }
+
+        return items;
+    }
+
+    public void clear()
+    {
+        this.cache.invalidateAll();
+    }
+
+    @Nullable
+    public static NBTTagList getStoredItemsTag(ItemStack containerStack)
+    {
+        NBTTagCompound nbt = ItemWrap.getTag(containerStack);
+
+        if (nbt != null && NbtWrap.containsCompound(nbt, "BlockEntityTag"))
+        {
+            NBTTagCompound tagBlockEntity = NbtWrap.getCompound(nbt, "BlockEntityTag");
+
+            if (NbtWrap.containsList(tagBlockEntity, "Items"))
+            {
+                return NbtWrap.getListOfCompounds(tagBlockEntity, "Items");
+            }
+        }
+
+        return null;
+    }
+
+    public static class StoredItems
+    {
+        protected final int hash;
+        protected final List<ItemStack> nonEmptyItems;
+        protected final int[] slots;
+        @Nullable protected InventoryView exactView;
+        @Nullable protected InventoryView nonEmptyView;
+        @Nullable protected Object2IntOpenHashMap<ItemType> itemCounts;
+
+        protected StoredItems(NBTTagList tagList, int hash)
+        {
+            final int count = NbtWrap.getListSize(tagList);
+            List<ItemStack> items = new ArrayList<>(count);
+            int[] slots = new int[count];
+
+            for (int i = 0; i < count; ++i)
+            {
+                NBTTagCompound tag = NbtWrap.getCompoundAt(tagList, i);
+                ItemStack stack = ItemWrap.fromTag(tag);
+
+                if (ItemWrap.notEmpty(stack))
+                {
+                    slots[items.size()] = NbtWrap.getByte(tag, "Slot");
+                    items.add(stack);
+                }
+            }
+
+            this.hash = hash;
+            this.nonEmptyItems = Collections.unmodifiableList(items);
+            this.slots = slots;
+        }
+
+        /**
+         * @return the non-empty stored items, in the order they are in the NBT data
+         */
+        public List<ItemStack> getNonEmptyItems()
+        {
+            return this.nonEmptyItems;
+        }
+
+        /**
+         * @return a read-only view of the stored items in their stored slots
+         */
+        public InventoryView getExactView()
+        {
+            if (this.exactView == null)
+            {
+                ListBackedInventoryView inv = new ListBackedInventoryView();
+                final int size = this.nonEmptyItems.size();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    if (this.slots[i] >= 0)
+                    {
+                        inv.setStackInSlot(this.slots[i], this.nonEmptyItems.get(i));
+                    }
+                }
+
+                this.exactView = new ReadOnlyInventoryView(inv);
+            }
+
+            return this.exactView;
+        }
+
+        /**
+         * @return a read-only view of the stored items with slot data, without any empty slots in between
+         */
+        public InventoryView getNonEmptyView()
+        {
+            if (this.nonEmptyView == null)
+            {
+                ListBackedInventoryView inv = new ListBackedInventoryView();
+                final int size = this.nonEmptyItems.size();
+
+                for (int i = 0; i < size; ++i)
+                {
+                    if (this.slots[i] >= 0)
+                    {
+                        inv.addStack(this.nonEmptyItems.get(i));
+                    }
+                }
+
+                this.nonEmptyView = new ReadOnlyInventoryView(inv);
+            }
+
+            return this.nonEmptyView;
+        }
+
+        /**
+         * @return the stored item counts, including the contents of any nested storage items.
+         *         The returned map must not be modified.
+         */
+        public Object2IntOpenHashMap<ItemType> getItemCounts()
+        {
+            if (this.itemCounts == null)
+            {
+                this.itemCounts = InventoryUtils.getInventoryItemCounts(new ListBackedInventoryView(this.nonEmptyItems));
+            }
+
+            return this.itemCounts;
+        }
+    }
+}
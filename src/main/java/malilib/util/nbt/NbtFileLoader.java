@@ -0,0 +1,294 @@
+package malilib.util.nbt;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import malilib.MaLiLib;
+import malilib.util.FileUtils;
+import malilib.util.MathUtils;
+
+/**
+ * Loads compressed NBT files, and batches of them on a small pool of worker threads.
+ * <br><br>
+ * Small compressed files are read with a single {@link FileChannel} read into memory,
+ * and the file is closed right away. Larger files are read from the channel in chunks
+ * of {@link #BUFFER_SIZE} bytes while decompressing, and the file is closed when the stream is closed.
+ * The files are not memory mapped, since a mapping keeps the file locked
+ * (on Windows) until it gets garbage collected, which would prevent overwriting
+ * or deleting a file that was just read.
+ * The decompression then uses larger buffers than the vanilla
+ * {@link CompressedStreamTools#readCompressed(InputStream)}, so the inflater is called
+ * with larger chunks of data, and fewer times.
+ */
+public class NbtFileLoader
+{
+    public static final NbtFileLoader INSTANCE = new NbtFileLoader();
+
+    protected static final int BUFFER_SIZE = 64 * 1024;
+    /** Files larger than this are read in chunks while decompressing, instead of being read to the heap all at once */
+    protected static final long MAX_HEAP_READ_SIZE = 16L * 1024L * 1024L;
+
+    @Nullable protected ExecutorService executor;
+
+    /**
+     * Reads a gzip compressed NBT file
+     * @throws IOException if the file can't be read or the data is invalid
+     */
+    public static NBTTagCompound readCompressed(Path file) throws IOException
+    {
+        try (DataInputStream input = openCompressed(file))
+        {
+            return CompressedStreamTools.read(input);
+        }
+    }
+
+    /**
+     * Reads a gzip compressed NBT file
+     * @return the root compound tag, or null if the file could not be read
+     */
+    @Nullable
+    public static NBTTagCompound readNbtFromFile(Path file)
+    {
+        if (Files.isReadable(file) == false)
+        {
+            return null;
+        }
+
+        try
+        {
+            return readCompressed(file);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to read NBT data from file '{}'", file.toAbsolutePath());
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens a stream of the decompressed data of a gzip compressed file
+     */
+    public static DataInputStream openCompressed(Path file) throws IOException
+    {
+        InputStream compressed = readFileData(file);
+
+        try
+        {
+            return new DataInputStream(new BufferedInputStream(new GZIPInputStream(compressed, BUFFER_SIZE), BUFFER_SIZE));
+        }
+        catch (IOException e)
+        {
+            // The GZIP header is read in the constructor, so close the file if that fails
+            compressed.close();
+            throw e;
+        }
+    }
+
+    protected static InputStream readFileData(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try
+        {
+            long size = channel.size();
+
+            // The GZIPInputStream reads from the channel in chunks of its buffer size,
+            // and closing the stream closes the channel
+            if (size > MAX_HEAP_READ_SIZE)
+            {
+                return Channels.newInputStream(channel);
+            }
+
+            byte[] data = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    throw new EOFException();
+                }
+            }
+
+            channel.close();
+
+            return new ByteArrayInputStream(data);
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads all the files in the directory that match the filter, using the given loader function.
+     * See {@link #loadFiles(List, Function, ProgressListener)}.
+     */
+    public <T> CompletableFuture<Map<Path, T>> loadDirectory(Path dir,
+                                                             Predicate<Path> fileFilter,
+                                                             Function<Path, T> loader,
+                                                             @Nullable ProgressListener listener)
+    {
+        return this.loadFiles(FileUtils.getDirectoryContents(dir, fileFilter, true), loader, listener);
+    }
+
+    /**
+     * Loads the files on the worker threads, using the given loader function,
+     * for example {@link #readNbtFromFile(Path)} or a function that only reads
+     * some values using {@link NbtUtils#readNbtPathsFromFile(Path, String...)}.
+     * <br><br>
+     * The progress listener is called on the worker threads after each file.
+     * Cancelling the returned future skips the files that haven't been started yet.
+     * Exceptions from the loader or the listener are logged, and the file is skipped,
+     * but an Error from the loader completes the future exceptionally.
+     * @return a future that completes with the loaded values by their files, in the
+     *         order of the input list. The files for which the loader returned null
+     *         or threw an exception are not included.
+     */
+    public <T> CompletableFuture<Map<Path, T>> loadFiles(List<Path> files,
+                                                         Function<Path, T> loader,
+                                                         @Nullable ProgressListener listener)
+    {
+        final int totalCount = files.size();
+        final CompletableFuture<Map<Path, T>> result = new CompletableFuture<>();
+        final AtomicReferenceArray<T> values = new AtomicReferenceArray<>(totalCount);
+        final AtomicInteger completedCount = new AtomicInteger();
+        final long startTime = System.nanoTime();
+
+        if (totalCount == 0)
+        {
+            result.complete(new LinkedHashMap<>());
+            return result;
+        }
+
+        ExecutorService executor = this.getExecutor();
+
+        for (int i = 0; i < totalCount; ++i)
+        {
+            final int index = i;
+            final Path file = files.get(i);
+
+            executor.execute(() -> {
+                if (result.isDone())
+                {
+                    return;
+                }
+
+                Throwable error = null;
+
+                try
+                {
+                    values.set(index, loader.apply(file));
+                }
+                catch (Exception e)
+                {
+                    MaLiLib.LOGGER.warn("NbtFileLoader: Exception while loading the file '{}'", file.toAbsolutePath(), e);
+                }
+                catch (Throwable t)
+                {
+                    // Errors (like running out of memory) fail the whole batch
+                    error = t;
+                }
+
+                // The file always gets counted, so that the future completes even if something throws
+                int count = completedCount.incrementAndGet();
+
+                if (listener != null)
+                {
+                    try
+                    {
+                        listener.onFileLoaded(file, count, totalCount);
+                    }
+                    catch (Throwable t)
+                    {
+                        MaLiLib.LOGGER.warn("NbtFileLoader: Exception from the progress listener for the file '{}'", file.toAbsolutePath(), t);
+                    }
+                }
+
+                if (error != null)
+                {
+                    result.completeExceptionally(error);
+                }
+                else if (count == totalCount)
+                {
+                    MaLiLib.debugLog("NbtFileLoader: Loaded {} files in {} ms", totalCount,
+                                     (System.nanoTime() - startTime) / 1000000L);
+                    result.complete(collectValues(files, values));
+                }
+            });
+        }
+
+        return result;
+    }
+
+    protected static <T> Map<Path, T> collectValues(List<Path> files, AtomicReferenceArray<T> values)
+    {
+        Map<Path, T> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < values.length(); ++i)
+        {
+            T value = values.get(i);
+
+            if (value != null)
+            {
+                map.put(files.get(i), value);
+            }
+        }
+
+        return map;
+    }
+
+    protected synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+        {
+            int threadCount = MathUtils.clamp(Runtime.getRuntime().availableProcessors() - 1, 1, 4);
+            ThreadFactory factory = new ThreadFactoryBuilder()
+                                            .setNameFormat("malilib nbt file loader #%d")
+                                            .setDaemon(true).build();
+            this.executor = Executors.newFixedThreadPool(threadCount, factory);
+        }
+
+        return this.executor;
+    }
+
+    public interface ProgressListener
+    {
+        /**
+         * Called on a worker thread after each file has been loaded, or has failed to load
+         * @param file the file that was just processed
+         * @param completedCount the number of files processed so far, including this one
+         * @param totalCount the total number of files in the batch
+         */
+        void onFileLoaded(Path file, int completedCount, int totalCount);
+    }
+}
@@ -0,0 +1,81 @@
+package malilib.util.nbt;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * A visitor that reads the values at the given paths, and skips everything else.
+ * The paths are the dot separated names of the nested compound tags, starting from
+ * the entries of the root compound, for example <b>Metadata.EnclosingSize</b>.
+ * The reading is stopped once all the requested values have been found.
+ */
+public class NbtPathExtractor implements NbtVisitor
+{
+    protected final Set<String> paths = new HashSet<>();
+    protected final Set<String> parentPaths = new HashSet<>();
+    protected final Map<String, NBTBase> values = new HashMap<>();
+
+    public NbtPathExtractor(Collection<String> paths)
+    {
+        for (String path : paths)
+        {
+            this.paths.add(path);
+
+            int index = path.indexOf('.');
+
+            while (index >= 0)
+            {
+                this.parentPaths.add(path.substring(0, index));
+                index = path.indexOf('.', index + 1);
+            }
+        }
+    }
+
+    /**
+     * @return the found values by their paths. The paths that were not found don't have an entry.
+     */
+    public Map<String, NBTBase> getValues()
+    {
+        return this.values;
+    }
+
+    @Override
+    public Action visitEntry(List<String> path, String name, int typeId)
+    {
+        if (this.values.size() >= this.paths.size())
+        {
+            return Action.STOP;
+        }
+
+        String fullPath = getFullPath(path, name);
+
+        if (this.paths.contains(fullPath))
+        {
+            return Action.READ;
+        }
+
+        return this.parentPaths.contains(fullPath) ? Action.ENTER : Action.SKIP;
+    }
+
+    @Override
+    public void visitValue(List<String> path, String name, NBTBase value)
+    {
+        this.values.put(getFullPath(path, name), value);
+    }
+
+    protected static String getFullPath(List<String> path, String name)
+    {
+        if (path.isEmpty())
+        {
+            return name;
+        }
+
+        return String.join(".", path) + "." + name;
+    }
+}
@@ -0,0 +1,322 @@
+package malilib.util.nbt;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLongArray;
+
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+
+/**
+ * Reads NBT data from a stream, without building the whole tag tree.
+ * The {@link NbtVisitor} decides which values get read. The skipped values
+ * are only read past in the stream, without creating any objects for them.
+ * This is useful for reading only a few values, such as the metadata,
+ * from large files like schematics.
+ */
+public class NbtStreamReader
+{
+    /** The same nesting depth limit that the vanilla NBT reader uses */
+    public static final int MAX_DEPTH = 512;
+
+    protected final DataInputStream input;
+    protected final ArrayList<String> path = new ArrayList<>();
+    protected boolean stopped;
+
+    public NbtStreamReader(DataInputStream input)
+    {
+        this.input = input;
+    }
+
+    /**
+     * Creates a reader for gzip compressed NBT data, like the vanilla
+     * {@link net.minecraft.nbt.CompressedStreamTools#readCompressed(InputStream)} reads
+     */
+    public static NbtStreamReader createCompressed(InputStream inputStream) throws IOException
+    {
+        return new NbtStreamReader(new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream))));
+    }
+
+    /**
+     * Reads the root compound tag, passing its entries to the visitor
+     * @return the name of the root tag
+     * @throws IOException if the data is invalid or the stream can't be read
+     */
+    public String read(NbtVisitor visitor) throws IOException
+    {
+        int typeId = this.input.readByte();
+
+        if (typeId != Constants.NBT.TAG_COMPOUND)
+        {
+            throw new IOException("Root tag must be a named compound tag");
+        }
+
+        String rootName = this.input.readUTF();
+
+        this.path.clear();
+        this.stopped = false;
+        this.visitCompound(visitor, 1);
+
+        return rootName;
+    }
+
+    protected void visitCompound(NbtVisitor visitor, int depth) throws IOException
+    {
+        this.checkDepth(depth);
+
+        int typeId;
+
+        while ((typeId = this.input.readByte()) != Constants.NBT.TAG_END)
+        {
+            String name = this.input.readUTF();
+            NbtVisitor.Action action = visitor.visitEntry(this.path, name, typeId);
+
+            switch (action)
+            {
+                case STOP:
+                    this.stopped = true;
+                    return;
+
+                case SKIP:
+                    this.skipValue(typeId, depth);
+                    break;
+
+                case ENTER:
+                    if (typeId == Constants.NBT.TAG_COMPOUND)
+                    {
+                        this.path.add(name);
+                        this.visitCompound(visitor, depth + 1);
+
+                        if (this.stopped)
+                        {
+                            return;
+                        }
+
+                        visitor.visitCompoundEnd(this.path);
+                        this.path.remove(this.path.size() - 1);
+                        break;
+                    }
+
+                    // Other types can't be entered, so they are read fully instead
+
+                case READ:
+                    visitor.visitValue(this.path, name, this.readValue(typeId, depth));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the value of the given type into a new tag
+     */
+    public NBTBase readValue(int typeId, int depth) throws IOException
+    {
+        switch (typeId)
+        {
+            case Constants.NBT.TAG_BYTE:        return NbtWrap.asByteTag(this.input.readByte());
+            case Constants.NBT.TAG_SHORT:       return NbtWrap.asShortTag(this.input.readShort());
+            case Constants.NBT.TAG_INT:         return NbtWrap.asIntTag(this.input.readInt());
+            case Constants.NBT.TAG_LONG:        return NbtWrap.asLongTag(this.input.readLong());
+            case Constants.NBT.TAG_FLOAT:       return NbtWrap.asFloatTag(this.input.readFloat());
+            case Constants.NBT.TAG_DOUBLE:      return NbtWrap.asDoubleTag(this.input.readDouble());
+            case Constants.NBT.TAG_STRING:      return NbtWrap.asStringTag(this.input.readUTF());
+            case Constants.NBT.TAG_BYTE_ARRAY:  return new NBTTagByteArray(this.readByteArray());
+            case Constants.NBT.TAG_INT_ARRAY:   return new NBTTagIntArray(this.readIntArray());
+            case Constants.NBT.TAG_LONG_ARRAY:  return new NBTTagLongArray(this.readLongArray());
+            case Constants.NBT.TAG_LIST:        return this.readList(depth);
+            case Constants.NBT.TAG_COMPOUND:    return this.readCompound(depth);
+        }
+
+        throw new IOException("Invalid NBT tag type: " + typeId);
+    }
+
+    protected NBTTagCompound readCompound(int depth) throws IOException
+    {
+        this.checkDepth(depth + 1);
+
+        NBTTagCompound tag = new NBTTagCompound();
+        int typeId;
+
+        while ((typeId = this.input.readByte()) != Constants.NBT.TAG_END)
+        {
+            String name = this.input.readUTF();
+            NbtWrap.putTag(tag, name, this.readValue(typeId, depth + 1));
+        }
+
+        return tag;
+    }
+
+    protected NBTTagList readList(int depth) throws IOException
+    {
+        this.checkDepth(depth + 1);
+
+        int elementTypeId = this.input.readByte();
+        int size = this.readLength();
+        NBTTagList list = new NBTTagList();
+
+        if (elementTypeId == Constants.NBT.TAG_END && size > 0)
+        {
+            throw new IOException("Missing type on a non-empty list tag");
+        }
+
+        for (int i = 0; i < size; ++i)
+        {
+            NbtWrap.addTag(list, this.readValue(elementTypeId, depth + 1));
+        }
+
+        return list;
+    }
+
+    protected byte[] readByteArray() throws IOException
+    {
+        byte[] arr = new byte[this.readLength()];
+        this.input.readFully(arr);
+        return arr;
+    }
+
+    protected int[] readIntArray() throws IOException
+    {
+        int[] arr = new int[this.readLength()];
+
+        for (int i = 0; i < arr.length; ++i)
+        {
+            arr[i] = this.input.readInt();
+        }
+
+        return arr;
+    }
+
+    protected long[] readLongArray() throws IOException
+    {
+        long[] arr = new long[this.readLength()];
+
+        for (int i = 0; i < arr.length; ++i)
+        {
+            arr[i] = this.input.readLong();
+        }
+
+        return arr;
+    }
+
+    /**
+     * Reads past the value of the given type
+     */
+    public void skipValue(int typeId, int depth) throws IOException
+    {
+        switch (typeId)
+        {
+            case Constants.NBT.TAG_BYTE:        this.skipBytes(1); return;
+            case Constants.NBT.TAG_SHORT:       this.skipBytes(2); return;
+            case Constants.NBT.TAG_INT:         this.skipBytes(4); return;
+            case Constants.NBT.TAG_LONG:        this.skipBytes(8); return;
+            case Constants.NBT.TAG_FLOAT:       this.skipBytes(4); return;
+            case Constants.NBT.TAG_DOUBLE:      this.skipBytes(8); return;
+            case Constants.NBT.TAG_STRING:      this.skipBytes(this.input.readUnsignedShort()); return;
+            case Constants.NBT.TAG_BYTE_ARRAY:  this.skipBytes(this.readLength()); return;
+            case Constants.NBT.TAG_INT_ARRAY:   this.skipBytes(this.readLength() * 4L); return;
+            case Constants.NBT.TAG_LONG_ARRAY:  this.skipBytes(this.readLength() * 8L); return;
+            case Constants.NBT.TAG_LIST:        this.skipList(depth); return;
+            case Constants.NBT.TAG_COMPOUND:    this.skipCompound(depth); return;
+        }
+
+        throw new IOException("Invalid NBT tag type: " + typeId);
+    }
+
+    protected void skipCompound(int depth) throws IOException
+    {
+        this.checkDepth(depth + 1);
+
+        int typeId;
+
+        while ((typeId = this.input.readByte()) != Constants.NBT.TAG_END)
+        {
+            this.skipBytes(this.input.readUnsignedShort());
+            this.skipValue(typeId, depth + 1);
+        }
+    }
+
+    protected void skipList(int depth) throws IOException
+    {
+        this.checkDepth(depth + 1);
+
+        int elementTypeId = this.input.readByte();
+        int size = this.readLength();
+        int fixedSize = getFixedValueSize(elementTypeId);
+
+        if (fixedSize > 0)
+        {
+            this.skipBytes((long) size * fixedSize);
+            return;
+        }
+
+        for (int i = 0; i < size; ++i)
+        {
+            this.skipValue(elementTypeId, depth + 1);
+        }
+    }
+
+    protected void skipBytes(long count) throws IOException
+    {
+        while (count > 0)
+        {
+            int skipped = this.input.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+
+            if (skipped <= 0)
+            {
+                throw new EOFException();
+            }
+
+            count -= skipped;
+        }
+    }
+
+    protected int readLength() throws IOException
+    {
+        int length = this.input.readInt();
+
+        if (length < 0)
+        {
+            throw new IOException("Negative NBT array or list length: " + length);
+        }
+
+        return length;
+    }
+
+    protected void checkDepth(int depth) throws IOException
+    {
+        if (depth > MAX_DEPTH)
+        {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+    }
+
+    /**
+     * @return the number of bytes that a value of the given type takes, or -1 if it's not a fixed size type
+     */
+    protected static int getFixedValueSize(int typeId)
+    {
+        switch (typeId)
+        {
+            case Constants.NBT.TAG_BYTE:    return 1;
+            case Constants.NBT.TAG_SHORT:   return 2;
+            case Constants.NBT.TAG_INT:     return 4;
+            case Constants.NBT.TAG_LONG:    return 8;
+            case Constants.NBT.TAG_FLOAT:   return 4;
+            case Constants.NBT.TAG_DOUBLE:  return 8;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,261 @@
+package malilib.util.nbt;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import net.minecraft.nbt.NBTBase;
+
+import malilib.mixin.access.NBTBaseMixin;
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+
+/**
+ * Writes NBT data directly to a stream, without first building the whole tag tree.
+ * This allows writing large amounts of data, like the block data of a schematic,
+ * directly from the source data structures.
+ * <br><br>
+ * The root compound is started with {@link #beginCompound(String)} and finished
+ * with {@link #endCompound()}. Inside compounds all the values need a name.
+ * Inside lists the names are ignored, and each value must be of the list's element type.
+ * The number of elements must be given when the list is started, as the NBT format
+ * stores the list length before the elements.
+ */
+public class NbtStreamWriter implements Closeable
+{
+    protected final DataOutputStream output;
+    protected final ArrayList<Context> contexts = new ArrayList<>();
+    protected boolean rootWritten;
+
+    public NbtStreamWriter(DataOutputStream output)
+    {
+        this.output = output;
+    }
+
+    /**
+     * Creates a writer that writes gzip compressed NBT data, like
+     * {@link NbtUtils#writeCompressed(net.minecraft.nbt.NBTTagCompound, String, OutputStream)} does
+     */
+    public static NbtStreamWriter createCompressed(OutputStream outputStream) throws IOException
+    {
+        return new NbtStreamWriter(new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream))));
+    }
+
+    public NbtStreamWriter beginCompound(String name) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_COMPOUND, name);
+        this.contexts.add(new Context(false, Constants.NBT.TAG_COMPOUND, 0));
+        return this;
+    }
+
+    public NbtStreamWriter endCompound() throws IOException
+    {
+        this.endContext(Constants.NBT.TAG_COMPOUND);
+        this.output.writeByte(Constants.NBT.TAG_END);
+        return this;
+    }
+
+    /**
+     * Starts a list with the given element type and the given number of elements
+     */
+    public NbtStreamWriter beginList(String name, int elementTypeId, int size) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_LIST, name);
+        this.output.writeByte(size > 0 ? elementTypeId : Constants.NBT.TAG_END);
+        this.output.writeInt(size);
+        this.contexts.add(new Context(true, elementTypeId, size));
+        return this;
+    }
+
+    public NbtStreamWriter endList() throws IOException
+    {
+        Context context = this.endContext(Constants.NBT.TAG_LIST);
+
+        if (context.remainingElements != 0)
+        {
+            throw new IllegalStateException("endList(): " + context.remainingElements + " list elements were not written");
+        }
+
+        return this;
+    }
+
+    public NbtStreamWriter writeByte(String name, byte value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_BYTE, name);
+        this.output.writeByte(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeShort(String name, short value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_SHORT, name);
+        this.output.writeShort(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeInt(String name, int value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_INT, name);
+        this.output.writeInt(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeLong(String name, long value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_LONG, name);
+        this.output.writeLong(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeFloat(String name, float value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_FLOAT, name);
+        this.output.writeFloat(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeDouble(String name, double value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_DOUBLE, name);
+        this.output.writeDouble(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeString(String name, String value) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_STRING, name);
+        this.output.writeUTF(value);
+        return this;
+    }
+
+    public NbtStreamWriter writeByteArray(String name, byte[] arr) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_BYTE_ARRAY, name);
+        this.output.writeInt(arr.length);
+        this.output.write(arr);
+        return this;
+    }
+
+    public NbtStreamWriter writeIntArray(String name, int[] arr) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_INT_ARRAY, name);
+        this.output.writeInt(arr.length);
+
+        for (int value : arr)
+        {
+            this.output.writeInt(value);
+        }
+
+        return this;
+    }
+
+    public NbtStreamWriter writeLongArray(String name, long[] arr) throws IOException
+    {
+        this.writeEntryHeader(Constants.NBT.TAG_LONG_ARRAY, name);
+        this.output.writeInt(arr.length);
+
+        for (long value : arr)
+        {
+            this.output.writeLong(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes an existing tag, of any type
+     */
+    public NbtStreamWriter writeTag(String name, NBTBase tag) throws IOException
+    {
+        this.writeEntryHeader(NbtWrap.getTypeId(tag), name);
+        ((NBTBaseMixin) tag).invokeWrite(this.output);
+        return this;
+    }
+
+    /**
+     * Closes the underlying stream. The root compound must have been finished before this.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.output.close();
+
+        if (this.contexts.isEmpty() == false)
+        {
+            throw new IllegalStateException("close(): The root compound was not finished");
+        }
+    }
+
+    protected void writeEntryHeader(int typeId, String name) throws IOException
+    {
+        if (this.contexts.isEmpty())
+        {
+            if (this.rootWritten || typeId != Constants.NBT.TAG_COMPOUND)
+            {
+                throw new IllegalStateException("The root tag must be a single compound tag");
+            }
+
+            this.rootWritten = true;
+        }
+        else
+        {
+            Context context = this.contexts.get(this.contexts.size() - 1);
+
+            if (context.isList)
+            {
+                if (typeId != context.typeId)
+                {
+                    throw new IllegalArgumentException("Tried to add a tag of type " + typeId + " to a list of type " + context.typeId);
+                }
+
+                if (context.remainingElements <= 0)
+                {
+                    throw new IllegalStateException("Tried to add more elements than the declared size of the list");
+                }
+
+                --context.remainingElements;
+
+                // List elements don't have a type or a name
+                return;
+            }
+        }
+
+        this.output.writeByte(typeId);
+        this.output.writeUTF(name);
+    }
+
+    protected Context endContext(int tagTypeId)
+    {
+        if (this.contexts.isEmpty())
+        {
+            throw new IllegalStateException("There is no open compound or list to end");
+        }
+
+        Context context = this.contexts.remove(this.contexts.size() - 1);
+        if (context.isList == (tagTypeId == Constants.NBT.TAG_COMPOUND))
+        {
+            throw new IllegalStateException("Mismatched end of a compound or list tag");
+        }
+
+        return context;
+    }
+
+    protected static class Context
+    {
+        public final boolean isList;
+        /** The element type for lists */
+        public final int typeId;
+        public int remainingElements;
+
+        public Context(boolean isList, int typeId, int remainingElements)
+        {
+            this.isList = isList;
+            this.typeId = typeId;
+            this.remainingElements = remainingElements;
+        }
+    }
+}
@@ -8,13 +8,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 
-import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -232,22 +233,46 @@ public class NbtUtils
 
     @Nullable
     public static NBTTagCompound readNbtFromFile(Path file)
+    {
+        return NbtFileLoader.readNbtFromFile(file);
+    }
+
+    /**
+     * Reads only the values at the given paths from a compressed NBT file.
+     * Everything else in the file is skipped over without reading it into tags,
+     * and the reading stops once all the values have been found.
+     * See {@link NbtPathExtractor} for the path format.
+     * @return the found values by their paths, or null if the file could not be read
+     */
+    @Nullable
+    public static Map<String, NBTBase> readNbtPathsFromFile(Path file, String... paths)
+    {
+        NbtPathExtractor extractor = new NbtPathExtractor(Arrays.asList(paths));
+        return visitNbtFile(file, extractor) ? extractor.getValues() : null;
+    }
+
+    /**
+     * Reads a compressed NBT file using a streaming reader and the given visitor
+     * @return true if the file was read successfully
+     */
+    public static boolean visitNbtFile(Path file, NbtVisitor visitor)
     {
         if (Files.isReadable(file) == false)
         {
-            return null;
+            return false;
         }
 
         try (InputStream is = Files.newInputStream(file))
         {
-            return CompressedStreamTools.readCompressed(is);
+            NbtStreamReader.createCompressed(is).read(visitor);
+            return true;
         }
         catch (Exception e)
         {
             MaLiLib.LOGGER.warn("Failed to read NBT data from file '{}'", file.toAbsolutePath());
         }
 
-        return null;
+        return false;
     }
 
     /**
@@ -261,6 +286,16 @@ public class NbtUtils
         }
     }
 
+    /**
+     * Creates a streaming writer that writes gzipped NBT data to the output stream,
+     * without first building the whole compound tag.
+     * Closing the writer also closes the output stream.
+     */
+    public static NbtStreamWriter createCompressedWriter(OutputStream outputStream) throws IOException
+    {
+        return NbtStreamWriter.createCompressed(outputStream);
+    }
+
     private static void writeTag(NBTBase tag, String tagName, DataOutput output) throws IOException
     {
         int typeId = NbtWrap.getTypeId(tag);
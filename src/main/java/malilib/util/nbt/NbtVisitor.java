@@ -0,0 +1,49 @@
+package malilib.util.nbt;
+
+import java.util.List;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * A visitor for the {@link NbtStreamReader}. The reader calls {@link #visitEntry(List, String, int)}
+ * for each entry of the compound tags that it reads, before reading the value of the entry.
+ * The returned {@link Action} then decides whether the value gets read, skipped or entered into.
+ */
+public interface NbtVisitor
+{
+    /**
+     * Called for each entry of a compound tag, starting from the entries of the root compound.
+     * @param path the names of the compound tags enclosing this entry, starting from the root compound's child.
+     *             The list is reused by the reader, so it must not be modified or stored.
+     * @param name the name of this entry
+     * @param typeId the NBT type ID of this entry
+     * @return the action to take for the value of this entry
+     */
+    Action visitEntry(List<String> path, String name, int typeId);
+
+    /**
+     * Called with the value of an entry, for which {@link #visitEntry(List, String, int)}
+     * returned {@link Action#READ}
+     */
+    void visitValue(List<String> path, String name, NBTBase value);
+
+    /**
+     * Called after all the entries of an entered compound tag have been visited.
+     * The path includes the name of the compound tag itself.
+     */
+    default void visitCompoundEnd(List<String> path)
+    {
+    }
+
+    enum Action
+    {
+        /** Reads the full value, and passes it to {@link #visitValue(List, String, NBTBase)} */
+        READ,
+        /** Visits the entries of a compound tag. For other types this is the same as {@link #READ}. */
+        ENTER,
+        /** Skips over the value, without creating any objects for it */
+        SKIP,
+        /** Stops reading, for example when all the wanted values have been found */
+        STOP;
+    }
+}
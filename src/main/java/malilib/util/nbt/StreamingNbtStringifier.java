@@ -0,0 +1,546 @@
+package malilib.util.nbt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+
+import malilib.util.data.Constants;
+import malilib.util.game.wrap.NbtWrap;
+
+/**
+ * Produces the same single-line format as the {@link SimpleNbtStringifier}, but writes it
+ * directly to an {@link Appendable}, without building intermediate strings for the values.
+ * <br><br>
+ * The output can be limited with a depth budget and a length budget. The compound and list
+ * tags below the maximum depth are collapsed to <b>{...}</b> and <b>[...]</b>, unless their path
+ * has been expanded with {@link #setExpandedPaths(Collection)}. This allows for example an
+ * inspection screen to only expand the subtrees that the user has opened. The paths are
+ * the dot separated compound keys and list indices, for example <b>BlockEntityTag.Items.3</b>.
+ * When the length budget runs out, the output ends with <b>...</b>.
+ * <br><br>
+ * The results of {@link #getNbtString(NBTTagCompound)} can also be cached, see {@link #setCacheSize(int)}.
+ */
+public class StreamingNbtStringifier extends BaseNbtStringifier
+{
+    protected static final String TRUNCATED_MARKER = "...";
+
+    protected final Set<String> expandedPaths = new HashSet<>();
+    protected final StringBuilder reusedBuilder = new StringBuilder(256);
+    protected String[] pathKeys = new String[16];
+    protected int[] pathIndices = new int[16];
+    protected int pathLength;
+    protected int maxDepth = Integer.MAX_VALUE;
+    protected int maxLength = Integer.MAX_VALUE;
+    protected int writtenLength;
+    protected boolean truncated;
+    @Nullable protected Appendable output;
+    @Nullable protected StringBuilder outputBuilder;
+    @Nullable protected Cache<NBTBase, CachedString> cache;
+
+    public StreamingNbtStringifier()
+    {
+        super(false, true, "");
+    }
+
+    public StreamingNbtStringifier(String baseColor)
+    {
+        super(true, true, baseColor);
+    }
+
+    /**
+     * Sets the number of nesting levels of compound and list tags that get expanded.
+     * For example 1 only expands the root compound.
+     */
+    public StreamingNbtStringifier setMaxDepth(int maxDepth)
+    {
+        this.maxDepth = Math.max(maxDepth, 0);
+        this.invalidateCache();
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of characters to write, not counting the final truncation marker
+     */
+    public StreamingNbtStringifier setMaxLength(int maxLength)
+    {
+        this.maxLength = Math.max(maxLength, 0);
+        this.invalidateCache();
+        return this;
+    }
+
+    /**
+     * Sets the paths of the compound and list tags that get expanded even if they are below
+     * the maximum depth. Note that the parent tags of a path also need to be expanded.
+     */
+    public StreamingNbtStringifier setExpandedPaths(Collection<String> paths)
+    {
+        this.expandedPaths.clear();
+        this.expandedPaths.addAll(paths);
+        this.invalidateCache();
+        return this;
+    }
+
+    /**
+     * Enables caching the results of {@link #getNbtString(NBTTagCompound)}.
+     * The entries are keyed by the identity of the tag, and they are only used
+     * if the hash code of the tag hasn't changed. The tags are weakly referenced,
+     * so the cache doesn't keep them from being garbage collected.
+     * @param maxEntries the maximum number of cached strings, or 0 to disable the cache
+     */
+    public StreamingNbtStringifier setCacheSize(int maxEntries)
+    {
+        this.cache = maxEntries > 0 ? CacheBuilder.newBuilder().weakKeys().maximumSize(maxEntries).build() : null;
+        return this;
+    }
+
+    public void invalidateCache()
+    {
+        if (this.cache != null)
+        {
+            this.cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the stringified tag, from the cache if it's enabled and the tag hasn't changed
+     */
+    public String getNbtString(NBTTagCompound tag)
+    {
+        Cache<NBTBase, CachedString> cache = this.cache;
+        int hash = 0;
+
+        if (cache != null)
+        {
+            hash = tag.hashCode();
+            CachedString cached = cache.getIfPresent(tag);
+
+            if (cached != null && cached.hash == hash)
+            {
+                return cached.string;
+            }
+        }
+
+        StringBuilder sb = this.reusedBuilder;
+        sb.setLength(0);
+        this.appendNbtUnchecked(tag, sb);
+        String str = sb.toString();
+
+        // Don't keep a huge buffer around after some one-off large tag
+        if (sb.capacity() > 65536)
+        {
+            sb.setLength(0);
+            sb.trimToSize();
+        }
+
+        if (cache != null)
+        {
+            cache.put(tag, new CachedString(hash, str));
+        }
+
+        return str;
+    }
+
+    /**
+     * Writes the stringified tag to the output
+     * @return false if the output was truncated because of the length budget
+     */
+    public boolean appendNbt(NBTTagCompound tag, Appendable output) throws IOException
+    {
+        try
+        {
+            return this.appendNbtUnchecked(tag, output);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    protected boolean appendNbtUnchecked(NBTTagCompound tag, Appendable output)
+    {
+        this.output = output;
+        this.outputBuilder = output instanceof StringBuilder ? (StringBuilder) output : null;
+        this.pathLength = 0;
+        this.writtenLength = 0;
+        this.truncated = false;
+
+        try
+        {
+            if (this.colored)
+            {
+                this.write(this.baseColor);
+            }
+
+            this.appendCompound("", tag);
+
+            if (this.truncated)
+            {
+                this.output.append(TRUNCATED_MARKER);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            this.output = null;
+            this.outputBuilder = null;
+        }
+
+        return this.truncated == false;
+    }
+
+    @Override
+    protected void appendPrimitive(String tagName, NBTBase tag)
+    {
+        int typeId = NbtWrap.getTypeId(tag);
+        boolean useQuotes = typeId == Constants.NBT.TAG_STRING;
+
+        if (useQuotes)
+        {
+            this.write("\"");
+        }
+
+        if (this.colored)
+        {
+            this.writeNullable(this.getPrimitiveColorCode(typeId));
+        }
+
+        switch (typeId)
+        {
+            case Constants.NBT.TAG_BYTE:    this.writeNumber(((NBTTagByte) tag).getByte()); break;
+            case Constants.NBT.TAG_SHORT:   this.writeNumber(((NBTTagShort) tag).getShort()); break;
+            case Constants.NBT.TAG_INT:     this.writeNumber(((NBTTagInt) tag).getInt()); break;
+            case Constants.NBT.TAG_LONG:    this.writeNumber(((NBTTagLong) tag).getLong()); break;
+            case Constants.NBT.TAG_FLOAT:   this.write(String.valueOf(((NBTTagFloat) tag).getFloat())); break;
+            case Constants.NBT.TAG_DOUBLE:  this.write(String.valueOf(((NBTTagDouble) tag).getDouble())); break;
+            case Constants.NBT.TAG_STRING:  this.write(((NBTTagString) tag).getString()); break;
+        }
+
+        this.writeNumberSuffixAndBaseColor(typeId);
+
+        if (useQuotes)
+        {
+            this.write("\"");
+        }
+    }
+
+    @Override
+    protected void appendCompound(String tagName, NBTTagCompound tag)
+    {
+        if (this.isCollapsed())
+        {
+            this.write("{...}");
+            return;
+        }
+
+        String[] keys = NbtWrap.getKeys(tag).toArray(new String[0]);
+        Arrays.sort(keys);
+
+        this.write("{");
+
+        for (int i = 0; i < keys.length && this.truncated == false; ++i)
+        {
+            String key = keys[i];
+
+            if (i > 0)
+            {
+                this.write(",");
+            }
+
+            this.writeTagName(key);
+            this.write(":");
+            this.pushPath(key, -1);
+            this.appendTag(key, NbtWrap.getTag(tag, key));
+            this.popPath();
+        }
+
+        this.write("}");
+    }
+
+    @Override
+    protected void appendList(String tagName, NBTTagList list)
+    {
+        if (this.isCollapsed())
+        {
+            this.write("[...]");
+            return;
+        }
+
+        final int size = NbtWrap.getListSize(list);
+
+        this.write("[");
+
+        for (int i = 0; i < size && this.truncated == false; ++i)
+        {
+            if (i > 0)
+            {
+                this.write(",");
+            }
+
+            this.pushPath(null, i);
+            this.appendTag("", list.get(i));
+            this.popPath();
+        }
+
+        this.write("]");
+    }
+
+    @Override
+    protected void appendByteArray(String tagName, byte[] arr)
+    {
+        if (this.isCollapsed())
+        {
+            this.write("[...]");
+            return;
+        }
+
+        this.write("[");
+
+        for (int i = 0; i < arr.length && this.truncated == false; ++i)
+        {
+            this.writeArrayValueStart(i, Constants.NBT.TAG_BYTE);
+            this.writeNumber(arr[i]);
+            this.writeNumberSuffixAndBaseColor(Constants.NBT.TAG_BYTE);
+        }
+
+        this.write("]");
+    }
+
+    @Override
+    protected void appendIntArray(String tagName, int[] arr)
+    {
+        if (this.isCollapsed())
+        {
+            this.write("[...]");
+            return;
+        }
+
+        this.write("[");
+
+        for (int i = 0; i < arr.length && this.truncated == false; ++i)
+        {
+            this.writeArrayValueStart(i, Constants.NBT.TAG_INT);
+            this.writeNumber(arr[i]);
+            this.writeNumberSuffixAndBaseColor(Constants.NBT.TAG_INT);
+        }
+
+        this.write("]");
+    }
+
+    @Override
+    protected void appendLongArray(String tagName, long[] arr)
+    {
+        if (this.isCollapsed())
+        {
+            this.write("[...]");
+            return;
+        }
+
+        this.write("[");
+
+        for (int i = 0; i < arr.length && this.truncated == false; ++i)
+        {
+            this.writeArrayValueStart(i, Constants.NBT.TAG_LONG);
+            this.writeNumber(arr[i]);
+            this.writeNumberSuffixAndBaseColor(Constants.NBT.TAG_LONG);
+        }
+
+        this.write("]");
+    }
+
+    /**
+     * @return true if the compound or list tag at the current path should not be expanded
+     */
+    protected boolean isCollapsed()
+    {
+        if (this.pathLength < this.maxDepth)
+        {
+            return false;
+        }
+
+        return this.expandedPaths.isEmpty() || this.expandedPaths.contains(this.getCurrentPath()) == false;
+    }
+
+    protected String getCurrentPath()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < this.pathLength; ++i)
+        {
+            if (i > 0)
+            {
+                sb.append('.');
+            }
+
+            if (this.pathKeys[i] != null)
+            {
+                sb.append(this.pathKeys[i]);
+            }
+            else
+            {
+                sb.append(this.pathIndices[i]);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    protected void pushPath(@Nullable String key, int index)
+    {
+        if (this.pathLength >= this.pathKeys.length)
+        {
+            this.pathKeys = Arrays.copyOf(this.pathKeys, this.pathLength * 2);
+            this.pathIndices = Arrays.copyOf(this.pathIndices, this.pathLength * 2);
+        }
+
+        this.pathKeys[this.pathLength] = key;
+        this.pathIndices[this.pathLength] = index;
+        ++this.pathLength;
+    }
+
+    protected void popPath()
+    {
+        --this.pathLength;
+        this.pathKeys[this.pathLength] = null;
+    }
+
+    protected void writeTagName(String name)
+    {
+        if (name.length() == 0)
+        {
+            return;
+        }
+
+        this.write(this.tagNameQuote);
+
+        if (this.colored)
+        {
+            this.write(this.keyColor);
+            this.write(name);
+            this.write(this.baseColor);
+        }
+        else
+        {
+            this.write(name);
+        }
+
+        this.write(this.tagNameQuote);
+    }
+
+    protected void writeArrayValueStart(int index, int tagId)
+    {
+        if (index > 0)
+        {
+            this.write(",");
+        }
+
+        if (this.colored)
+        {
+            this.writeNullable(this.getPrimitiveColorCode(tagId));
+        }
+    }
+
+    protected void writeNumberSuffixAndBaseColor(int tagId)
+    {
+        String numberSuffix = this.useNumberSuffix ? this.getNumberSuffix(tagId) : null;
+
+        if (numberSuffix != null)
+        {
+            if (this.colored)
+            {
+                this.write(this.numberTypeColor);
+            }
+
+            this.write(numberSuffix);
+        }
+
+        if (this.colored)
+        {
+            this.write(this.baseColor);
+        }
+    }
+
+    protected void writeNumber(long value)
+    {
+        if (this.outputBuilder != null && this.truncated == false)
+        {
+            int lengthBefore = this.outputBuilder.length();
+            this.outputBuilder.append(value);
+            int length = this.outputBuilder.length() - lengthBefore;
+
+            if (this.writtenLength + length <= this.maxLength)
+            {
+                this.writtenLength += length;
+                return;
+            }
+
+            // Over the budget, undo and let write() handle the truncation
+            this.outputBuilder.setLength(lengthBefore);
+        }
+
+        this.write(String.valueOf(value));
+    }
+
+    protected void writeNullable(@Nullable String str)
+    {
+        if (str != null)
+        {
+            this.write(str);
+        }
+    }
+
+    protected void write(String str)
+    {
+        if (this.truncated)
+        {
+            return;
+        }
+
+        if (this.writtenLength + str.length() > this.maxLength)
+        {
+            this.truncated = true;
+            return;
+        }
+
+        try
+        {
+            this.output.append(str);
+            this.writtenLength += str.length();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected static class CachedString
+    {
+        public final int hash;
+        public final String string;
+
+        public CachedString(int hash, String string)
+        {
+            this.hash = hash;
+            this.string = string;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package malilib.network;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.network.INetHandler;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.ResourceLocation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PacketSplitterTest
+{
+    private static final int PAYLOAD_SIZE = 50 * 1024 * 1024;
+    /** The allowed allocations on top of the payload itself, for the session and the buffer wrapper objects */
+    private static final long ALLOCATION_OVERHEAD_LIMIT = 4L * 1024L * 1024L;
+
+    private static final Pair<INetHandler, ResourceLocation> KEY = Pair.of(null, new ResourceLocation("malilib", "test"));
+
+    @Test
+    public void testUncompressedPayloadIsReassembledWithoutCopying()
+    {
+        byte[] expected = createPayload();
+        List<PacketBuffer> chunks = new ArrayList<>();
+
+        PacketSplitter.send(new PacketBuffer(Unpooled.wrappedBuffer(expected)), PacketSplitter.MAX_PAYLOAD_PER_PACKET_S2C, chunks::add);
+
+        assertEquals((PAYLOAD_SIZE + PacketSplitter.MAX_PAYLOAD_PER_PACKET_S2C - 1) / PacketSplitter.MAX_PAYLOAD_PER_PACKET_S2C, chunks.size());
+
+        SplitPacketSessionManager manager = new SplitPacketSessionManager();
+        long allocatedBefore = getAllocatedBytes();
+        PacketBuffer payload = receiveAll(manager, chunks);
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        // The fragments are retained and referenced from the composite buffer, not copied
+        assertTrue(allocated < ALLOCATION_OVERHEAD_LIMIT, "Allocated " + allocated + " bytes while reassembling the payload");
+
+        for (PacketBuffer chunk : chunks)
+        {
+            assertEquals(2, chunk.refCnt());
+        }
+
+        assertPayloadEquals(expected, payload);
+        assertEquals(0, manager.getSessionCount());
+        assertEquals(0, manager.getReservedBytes());
+        assertEquals(1, manager.getCompletedSessionCount());
+
+        payload.release();
+
+        // Releasing the payload releases the retained fragments
+        for (PacketBuffer chunk : chunks)
+        {
+            assertEquals(1, chunk.refCnt());
+            chunk.release();
+        }
+    }
+
+    @Test
+    public void testCompressedPayloadIsInflatedOnce()
+    {
+        byte[] expected = createPayload();
+        List<PacketBuffer> chunks = new ArrayList<>();
+
+        PacketSplitter.sendCompressed(new PacketBuffer(Unpooled.wrappedBuffer(expected)), PacketSplitter.MAX_TOTAL_PER_PACKET_S2C, 1, chunks::add);
+
+        SplitPacketSessionManager manager = new SplitPacketSessionManager();
+        long allocatedBefore = getAllocatedBytes();
+        PacketBuffer payload = receiveAll(manager, chunks);
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        // The payload is inflated directly into the output buffer, without any intermediate copies
+        assertTrue(allocated < PAYLOAD_SIZE + ALLOCATION_OVERHEAD_LIMIT, "Allocated " + allocated + " bytes while inflating the payload");
+
+        assertPayloadEquals(expected, payload);
+        assertEquals(0, manager.getSessionCount());
+        assertEquals(0, manager.getReservedBytes());
+
+        payload.release();
+    }
+
+    @Test
+    public void testOverBudgetPayloadIsRejectedBeforeAllocating()
+    {
+        SplitPacketSessionManager manager = new SplitPacketSessionManager();
+        manager.setMaxTotalBytes(1024 * 1024);
+
+        // The first packet of a compressed payload that declares a 64 MB uncompressed size
+        PacketBuffer first = new PacketBuffer(Unpooled.buffer());
+        first.writeVarInt(PacketSplitter.COMPRESSED_PAYLOAD_MARKER);
+        first.writeVarInt(PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_S2C);
+        first.writeBytes(getCompressedStart(1024));
+
+        long allocatedBefore = getAllocatedBytes();
+        assertThrows(IllegalArgumentException.class, () -> manager.receive(KEY, first, PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_S2C));
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        assertTrue(allocated < ALLOCATION_OVERHEAD_LIMIT, "Allocated " + allocated + " bytes for a rejected payload");
+        assertEquals(0, manager.getSessionCount());
+        assertEquals(0, manager.getReservedBytes());
+        // The rest of the payload's fragments get discarded
+        assertEquals(1, manager.getDiscardingSessionCount());
+    }
+
+    private static PacketBuffer receiveAll(SplitPacketSessionManager manager, List<PacketBuffer> chunks)
+    {
+        PacketBuffer payload = null;
+
+        for (int i = 0; i < chunks.size(); ++i)
+        {
+            assertNull(payload, "The payload was completed before the last chunk");
+            payload = manager.receive(KEY, chunks.get(i), PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_S2C);
+        }
+
+        assertNotNull(payload, "The payload was not completed by the last chunk");
+
+        return payload;
+    }
+
+    private static void assertPayloadEquals(byte[] expected, ByteBuf payload)
+    {
+        assertEquals(expected.length, payload.readableBytes());
+
+        byte[] received = new byte[payload.readableBytes()];
+        payload.getBytes(payload.readerIndex(), received);
+
+        assertArrayEquals(expected, received);
+    }
+
+    /**
+     * @return the first bytes of a longer compressed stream, so that the stream doesn't end within them
+     */
+    private static byte[] getCompressedStart(int length)
+    {
+        byte[] input = new byte[length * 4];
+        byte[] output = new byte[length];
+        Deflater deflater = new Deflater(1);
+
+        new Random(0x5EED).nextBytes(input);
+        deflater.setInput(input);
+        deflater.finish();
+        deflater.deflate(output);
+        deflater.end();
+
+        return output;
+    }
+
+    private static byte[] createPayload()
+    {
+        byte[] data = new byte[PAYLOAD_SIZE];
+        new Random(0x5EED).nextBytes(data);
+        return data;
+    }
+
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Thread allocation counting is not supported");
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemoryEnabled(), "Thread allocation counting is not enabled");
+
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}